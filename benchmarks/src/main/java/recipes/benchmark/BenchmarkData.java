@@ -0,0 +1,56 @@
+package recipes.benchmark;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.time.LocalTime;
+import java.util.Random;
+
+/*
+ * Reproducible data sets for the benchmarks. The same seed always produces the
+ * same rows.
+ */
+public class BenchmarkData {
+	public static final long SEED = 20221114L;
+
+	// @formatter:off
+	public static final String RECIPE_TABLE_DDL = ""
+		+ "CREATE TABLE recipe ("
+		+ "  recipe_id INT AUTO_INCREMENT NOT NULL,"
+		+ "  recipe_name VARCHAR(128) NOT NULL,"
+		+ "  notes TEXT,"
+		+ "  num_servings INT,"
+		+ "  prep_time TIME,"
+		+ "  cook_time TIME,"
+		+ "  created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,"
+		+ "  PRIMARY KEY (recipe_id)"
+		+ ")";
+	// @formatter:on
+
+	private static final String[] WORDS = { "Hot", "Pepper", "Chicken", "Soup", "Rice", "Beef", "Stew", "Garlic",
+			"Bread", "Tofu", "Salad", "Lemon", "Curry", "Pasta", "Smoked", "Salmon" };
+
+	public static void insertRecipes(Connection conn, int count) throws SQLException {
+		String sql = "INSERT INTO recipe (recipe_name, notes, num_servings, prep_time, cook_time) VALUES (?, ?, ?, ?, ?)";
+		Random random = new Random(SEED);
+
+		try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+			for (int row = 0; row < count; row++) {
+				stmt.setString(1, recipeName(random));
+				stmt.setString(2, "Notes for recipe " + row);
+				stmt.setInt(3, 1 + random.nextInt(8));
+				stmt.setTime(4, Time.valueOf(LocalTime.of(0, random.nextInt(60))));
+				stmt.setTime(5, Time.valueOf(LocalTime.of(random.nextInt(4), random.nextInt(60))));
+				stmt.addBatch();
+			}
+			stmt.executeBatch();
+		}
+	}
+
+	public static String recipeName(Random random) {
+		return WORDS[random.nextInt(WORDS.length)] + " " + WORDS[random.nextInt(WORDS.length)] + " "
+				+ WORDS[random.nextInt(WORDS.length)];
+	}
+
+} // end CLASS
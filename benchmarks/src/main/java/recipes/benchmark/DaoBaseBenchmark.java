@@ -0,0 +1,115 @@
+package recipes.benchmark;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalTime;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import provided.util.DaoBase;
+import recipes.entity.Ingredient;
+import recipes.entity.Recipe;
+
+/*
+ * DaoBase.extract on a single positioned row, and DaoBase.setParameter for each
+ * of the parameter types RecipeDao binds. Uses an in-memory H2 database, so
+ * neither includes network time.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DaoBaseBenchmark {
+	private ExposedDao dao = new ExposedDao();
+	private Connection conn;
+	private ResultSet recipeRow;
+	private ResultSet ingredientRow;
+	private PreparedStatement insert;
+
+	private String name = "Hot Pepper Soup";
+	private Integer servings = 4;
+	private BigDecimal amount = new BigDecimal("1.25");
+	private LocalTime prepTime = LocalTime.of(0, 20);
+
+	@Setup(Level.Trial)
+	public void setUp() throws SQLException {
+		conn = DriverManager.getConnection("jdbc:h2:mem:daobase;MODE=MySQL;DATABASE_TO_LOWER=TRUE");
+
+		try (Statement ddl = conn.createStatement()) {
+			ddl.execute(BenchmarkData.RECIPE_TABLE_DDL);
+			ddl.execute("CREATE TABLE ingredient (ingredient_id INT AUTO_INCREMENT PRIMARY KEY, recipe_id INT, "
+					+ "unit_id INT, ingredient_name VARCHAR(64), instruction VARCHAR(64), ingredient_order INT, "
+					+ "amount DECIMAL(7, 2))");
+			ddl.execute("INSERT INTO ingredient (recipe_id, unit_id, ingredient_name, instruction, "
+					+ "ingredient_order, amount) VALUES (1, 3, 'carrots', 'thinly sliced', 1, 0.25)");
+		}
+		BenchmarkData.insertRecipes(conn, 1);
+
+		recipeRow = conn.createStatement().executeQuery("SELECT * FROM recipe");
+		recipeRow.next();
+		ingredientRow = conn.createStatement().executeQuery("SELECT * FROM ingredient");
+		ingredientRow.next();
+
+		insert = conn.prepareStatement(
+				"INSERT INTO recipe (recipe_name, notes, num_servings, prep_time, cook_time) VALUES (?, ?, ?, ?, ?)");
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws SQLException {
+		conn.close();
+	}
+
+	@Benchmark
+	public Recipe extractRecipe() {
+		return dao.extract(recipeRow, Recipe.class);
+	}
+
+	@Benchmark
+	public Ingredient extractIngredient() {
+		return dao.extract(ingredientRow, Ingredient.class);
+	}
+
+	@Benchmark
+	public PreparedStatement setParameters() throws SQLException {
+		dao.setParameter(insert, 1, name, String.class);
+		dao.setParameter(insert, 2, null, String.class);
+		dao.setParameter(insert, 3, servings, Integer.class);
+		dao.setParameter(insert, 4, prepTime, LocalTime.class);
+		dao.setParameter(insert, 5, amount, BigDecimal.class);
+		return insert;
+	}
+
+	// Makes the protected DaoBase methods callable from the benchmark
+	private static class ExposedDao extends DaoBase {
+		@Override
+		public <T> T extract(ResultSet rs, Class<T> classType) {
+			return super.extract(rs, classType);
+		}
+
+		@Override
+		public void setParameter(PreparedStatement stmt, int parameterIndex, Object value, Class<?> classType)
+				throws SQLException {
+			super.setParameter(stmt, parameterIndex, value, classType);
+		}
+	}
+
+} // end CLASS
@@ -0,0 +1,105 @@
+package recipes.benchmark;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import provided.entity.EntityBase;
+import recipes.entity.Category;
+import recipes.entity.Ingredient;
+import recipes.entity.Recipe;
+import recipes.entity.Step;
+import recipes.entity.Unit;
+
+/*
+ * EntityBase.toFraction and Recipe.toString, the formatting done every time the
+ * CLI prints the current recipe.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EntityBenchmark {
+
+	@Param({ "0.25", "16.25", "2.6667" })
+	private String amount;
+
+	@Param({ "5", "50" })
+	private int children;
+
+	private FractionProbe probe = new FractionProbe();
+	private BigDecimal value;
+	private Recipe recipe;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		value = new BigDecimal(amount);
+		recipe = new Recipe();
+		recipe.setRecipeId(1);
+		recipe.setRecipeName("Hot Pepper Soup");
+		recipe.setNotes("Notes");
+		recipe.setNumServings(4);
+		recipe.setPrepTime(LocalTime.of(0, 20));
+		recipe.setCookTime(LocalTime.of(1, 10));
+		recipe.setCreatedAt(LocalDateTime.of(2022, 11, 14, 10, 30));
+
+		Unit unit = new Unit();
+		unit.setUnitId(3);
+		unit.setUnitNameSingular("cup");
+		unit.setUnitNamePlural("cups");
+
+		for (int index = 1; index <= children; index++) {
+			Ingredient ingredient = new Ingredient();
+			ingredient.setIngredientId(index);
+			ingredient.setIngredientName("ingredient " + index);
+			ingredient.setInstruction("chopped");
+			ingredient.setAmount(value);
+			ingredient.setUnit(unit);
+			recipe.getIngredients().add(ingredient);
+
+			Step step = new Step();
+			step.setStepId(index);
+			step.setStepText("Do step " + index);
+			recipe.getSteps().add(step);
+
+			Category category = new Category();
+			category.setCategoryId(index);
+			category.setCategoryName("Category " + index);
+			recipe.getCategories().add(category);
+		}
+	}
+
+	@Benchmark
+	public String toFraction() {
+		return probe.fraction(value);
+	}
+
+	@Benchmark
+	public String recipeToString() {
+		return recipe.toString();
+	}
+
+	// Makes the protected toFraction callable from the benchmark
+	private static class FractionProbe extends EntityBase {
+		String fraction(BigDecimal value) {
+			return toFraction(value);
+		}
+	}
+
+} // end CLASS
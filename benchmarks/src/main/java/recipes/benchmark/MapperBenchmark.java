@@ -0,0 +1,88 @@
+package recipes.benchmark;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import provided.util.RowMapper;
+import recipes.entity.Recipe;
+
+/*
+ * Per-row cost of turning a recipe row into a Recipe object: the original
+ * reflective extract versus the cached RowMapper. Rows come from an in-memory H2
+ * table so the numbers are not dominated by network time. Each invocation runs
+ * the same query for both variants, so the difference is the mapping cost.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MapperBenchmark {
+	private static final int ROWS = 1_000;
+
+	private Connection conn;
+	private PreparedStatement stmt;
+	private ReflectiveExtractor reflective = new ReflectiveExtractor();
+
+	@Setup(Level.Trial)
+	public void setUp() throws SQLException {
+		conn = DriverManager.getConnection("jdbc:h2:mem:mapper;MODE=MySQL;DATABASE_TO_LOWER=TRUE");
+
+		try (Statement ddl = conn.createStatement()) {
+			ddl.execute(BenchmarkData.RECIPE_TABLE_DDL);
+		}
+		BenchmarkData.insertRecipes(conn, ROWS);
+
+		stmt = conn.prepareStatement("SELECT * FROM recipe");
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws SQLException {
+		stmt.close();
+		conn.close();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(ROWS)
+	public void reflectiveExtract(Blackhole bh) throws SQLException {
+		try (ResultSet rs = stmt.executeQuery()) {
+			while (rs.next()) {
+				bh.consume(reflective.extract(rs, Recipe.class));
+			}
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(ROWS)
+	public void cachedRowMapper(Blackhole bh) throws SQLException {
+		try (ResultSet rs = stmt.executeQuery()) {
+			RowMapper<Recipe> mapper = RowMapper.forResultSet(rs, Recipe.class);
+
+			while (rs.next()) {
+				bh.consume(mapper.map(rs));
+			}
+		}
+	}
+
+} // end CLASS
@@ -0,0 +1,74 @@
+package recipes.benchmark;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Objects;
+
+import recipes.dao.DbConnection;
+
+/*
+ * Checks with EXPLAIN that the child table lookups of RecipeDao use the
+ * composite (recipe_id, order) keys, so a benchmark run against a schema
+ * without them (or with the old single-column recipe_id index winning) fails
+ * at setup instead of quietly measuring a filesort. The queries mirror the
+ * single-recipe and batched lookups in RecipeDao.
+ */
+public class QueryPlanCheck {
+	// @formatter:off
+	private static final String[][] PLANS = {
+		{ "i", "ingredient_recipe_order", ""
+			+ "SELECT i.*, u.unit_name_singular, u.unit_name_plural "
+			+ "FROM ingredient i "
+			+ "LEFT JOIN unit u USING (unit_id) "
+			+ "WHERE recipe_id = 1 "
+			+ "ORDER BY i.ingredient_order" },
+		{ "s", "step_recipe_order", ""
+			+ "SELECT * FROM step s "
+			+ "WHERE s.recipe_id = 1 "
+			+ "ORDER BY s.step_order" },
+		{ "i", "ingredient_recipe_order", ""
+			+ "SELECT i.*, u.unit_name_singular, u.unit_name_plural "
+			+ "FROM ingredient i "
+			+ "LEFT JOIN unit u USING (unit_id) "
+			+ "WHERE i.recipe_id IN (1, 2, 3, 4) "
+			+ "ORDER BY i.recipe_id, i.ingredient_order" },
+		{ "s", "step_recipe_order", ""
+			+ "SELECT * FROM step s "
+			+ "WHERE s.recipe_id IN (1, 2, 3, 4) "
+			+ "ORDER BY s.recipe_id, s.step_order" }
+	};
+	// @formatter:on
+
+	private QueryPlanCheck() {
+	}
+
+	public static void requireChildIndexes() {
+		try (Connection conn = DbConnection.getConnection(); Statement stmt = conn.createStatement()) {
+			for (String[] plan : PLANS) {
+				String key = keyOf(stmt, plan[0], plan[2]);
+
+				if (!plan[1].equals(key)) {
+					throw new IllegalStateException(
+							"Expected key " + plan[1] + " but EXPLAIN chose " + key + " for: " + plan[2]);
+				}
+			}
+		} catch (SQLException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	// The key MySQL picks for the given table alias, or null if it scans the table
+	private static String keyOf(Statement stmt, String alias, String sql) throws SQLException {
+		try (ResultSet rs = stmt.executeQuery("EXPLAIN " + sql)) {
+			while (rs.next()) {
+				if (Objects.equals(alias, rs.getString("table"))) {
+					return rs.getString("key");
+				}
+			}
+		}
+		throw new IllegalStateException("EXPLAIN has no row for table " + alias + ": " + sql);
+	}
+
+} // end CLASS
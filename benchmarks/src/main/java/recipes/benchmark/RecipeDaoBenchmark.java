@@ -0,0 +1,92 @@
+package recipes.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import recipes.dao.RecipeDao;
+import recipes.entity.Recipe;
+import recipes.entity.Step;
+import recipes.service.RecipeService;
+
+/*
+ * End-to-end RecipeDao calls against a real database. The trial setup drops and
+ * recreates the schema and loads a RecipeDataset of the requested size, so run
+ * it against a scratch database selected with -Drecipes.db.url (see pom.xml).
+ * Setup fails if the child table lookups don't use their composite indexes
+ * (see QueryPlanCheck).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class RecipeDaoBenchmark {
+	private static final int BATCH = 50;
+
+	@Param({ "1000", "100000", "1000000" })
+	private int recipes;
+
+	private RecipeDao recipeDao = new RecipeDao();
+	private Random random = new Random(BenchmarkData.SEED);
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		new RecipeService().createAndPopulateTables();
+
+		// Drop the sample recipes from recipe_data.sql (their children cascade) so the
+		// generated data set owns recipe IDs 1..recipes, which the benchmarks pick from
+		recipeDao.executeScript(List.of("DELETE FROM recipe").iterator(), 1);
+		recipeDao.executeScript(new RecipeDataset(recipes), 1_000);
+
+		QueryPlanCheck.requireChildIndexes();
+	}
+
+	@Benchmark
+	public Recipe fetchRecipeById() {
+		return recipeDao.fetchRecipeById(1 + random.nextInt(recipes)).orElseThrow();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(BATCH)
+	public List<Recipe> fetchRecipesByIds() {
+		List<Integer> ids = new ArrayList<>(BATCH);
+
+		for (int index = 0; index < BATCH; index++) {
+			ids.add(1 + random.nextInt(recipes));
+		}
+		return recipeDao.fetchRecipesByIds(ids);
+	}
+
+	@Benchmark
+	public List<Step> fetchRecipeSteps() {
+		return recipeDao.fetchRecipeSteps(1 + random.nextInt(recipes));
+	}
+
+	@Benchmark
+	public Step addStepToRecipe() {
+		Step step = new Step();
+		step.setRecipeId(1 + random.nextInt(recipes));
+		step.setStepText("Benchmark step");
+
+		recipeDao.addStepToRecipe(step);
+		return step;
+	}
+
+} // end CLASS
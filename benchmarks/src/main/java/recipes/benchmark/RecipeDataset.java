@@ -0,0 +1,103 @@
+package recipes.benchmark;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+/*
+ * Generates the SQL for a reproducible recipe data set: recipeCount recipes,
+ * each with INGREDIENTS ingredients, STEPS steps and one or two categories. The
+ * units and categories from recipe_data.sql are assumed to exist (IDs 1-10 and
+ * 1-10). Rows are emitted as multi-row INSERT statements of ROWS_PER_INSERT rows,
+ * lazily, so a million-recipe data set never has to be held in memory.
+ */
+public class RecipeDataset implements Iterator<String> {
+	public static final int INGREDIENTS = 5;
+	public static final int STEPS = 3;
+
+	private static final int ROWS_PER_INSERT = 100;
+	private static final String[] INGREDIENT_NAMES = { "onion", "garlic", "carrots", "celery", "butter", "flour",
+			"sugar", "salt", "black pepper", "chicken broth", "rice", "tomatoes", "basil", "olive oil", "eggs" };
+
+	private final int recipeCount;
+	private final Random random = new Random(BenchmarkData.SEED);
+	private final Deque<String> pending = new ArrayDeque<>();
+	private int nextRecipe = 1;
+
+	public RecipeDataset(int recipeCount) {
+		this.recipeCount = recipeCount;
+	}
+
+	@Override
+	public boolean hasNext() {
+		return !pending.isEmpty() || nextRecipe <= recipeCount;
+	}
+
+	@Override
+	public String next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+
+		if (pending.isEmpty()) {
+			generateBlock();
+		}
+		return pending.removeFirst();
+	}
+
+	/*
+	 * Queues the four INSERTs (recipe, ingredient, step, recipe_category) for the
+	 * next block of recipes. Recipe IDs are assigned explicitly so that child rows
+	 * can refer to them.
+	 */
+	private void generateBlock() {
+		int first = nextRecipe;
+		int last = Math.min(first + ROWS_PER_INSERT - 1, recipeCount);
+		nextRecipe = last + 1;
+
+		StringBuilder recipes = new StringBuilder(
+				"INSERT INTO recipe (recipe_id, recipe_name, notes, num_servings, prep_time, cook_time) VALUES ");
+		StringBuilder ingredients = new StringBuilder("INSERT INTO ingredient "
+				+ "(recipe_id, unit_id, ingredient_name, instruction, ingredient_order, amount) VALUES ");
+		StringBuilder steps = new StringBuilder("INSERT INTO step (recipe_id, step_order, step_text) VALUES ");
+		StringBuilder categories = new StringBuilder("INSERT INTO recipe_category (recipe_id, category_id) VALUES ");
+
+		for (int recipeId = first; recipeId <= last; recipeId++) {
+			String separator = recipeId == first ? "" : ", ";
+
+			recipes.append(separator).append('(').append(recipeId).append(", '")
+					.append(BenchmarkData.recipeName(random)).append("', 'Notes for recipe ").append(recipeId)
+					.append("', ").append(1 + random.nextInt(8)).append(", '00:").append(10 + random.nextInt(50))
+					.append(":00', '0").append(random.nextInt(4)).append(':').append(10 + random.nextInt(50))
+					.append(":00')");
+
+			for (int order = 1; order <= INGREDIENTS; order++) {
+				ingredients.append(recipeId == first && order == 1 ? "" : ", ").append('(').append(recipeId)
+						.append(", ").append(1 + random.nextInt(10)).append(", '")
+						.append(INGREDIENT_NAMES[random.nextInt(INGREDIENT_NAMES.length)]).append("', null, ")
+						.append(order).append(", ").append(1 + random.nextInt(16) / 4.0).append(')');
+			}
+
+			for (int order = 1; order <= STEPS; order++) {
+				steps.append(recipeId == first && order == 1 ? "" : ", ").append('(').append(recipeId).append(", ")
+						.append(order).append(", 'Step ").append(order).append(" of recipe ").append(recipeId)
+						.append("')");
+			}
+
+			int category = 1 + random.nextInt(10);
+			categories.append(separator).append('(').append(recipeId).append(", ").append(category).append(')');
+
+			if (random.nextBoolean()) {
+				categories.append(", (").append(recipeId).append(", ").append(1 + category % 10).append(')');
+			}
+		}
+
+		pending.add(recipes.toString());
+		pending.add(ingredients.toString());
+		pending.add(steps.toString());
+		pending.add(categories.toString());
+	}
+
+} // end CLASS
@@ -0,0 +1,131 @@
+package recipes.benchmark;
+
+import java.math.BigDecimal;
+import java.time.LocalTime;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import recipes.entity.Category;
+import recipes.entity.Ingredient;
+import recipes.entity.Recipe;
+import recipes.entity.Step;
+import recipes.entity.Unit;
+import recipes.service.RecipeService;
+
+/*
+ * Bulk recipe creation, in recipes per second: saveRecipe, which writes the
+ * whole recipe in one transaction with batched child INSERTs, against the
+ * piecemeal addRecipe/addIngredient/addStep/addCategoryToRecipe sequence, which
+ * borrows a connection and commits once per row. Like RecipeDaoBenchmark it
+ * needs a scratch MySQL database selected with -Drecipes.db.url (see pom.xml).
+ * Run with -t 4 (or more) to see how the two scale with concurrent writers.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class RecipeSaveBenchmark {
+	private static final int STEPS = 5;
+	private static final int CATEGORIES = 2;
+	private static final int UNITS = 10;
+
+	@Param({ "5", "20" })
+	private int ingredients;
+
+	private RecipeService recipeService = new RecipeService();
+	private List<Category> categories;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		recipeService.createAndPopulateTables();
+		categories = recipeService.fetchCategories();
+	}
+
+	@Benchmark
+	public Recipe saveRecipe() {
+		Recipe recipe = newRecipe();
+
+		for (int index = 0; index < ingredients; index++) {
+			recipe.getIngredients().add(newIngredient(null, index));
+		}
+
+		for (int index = 0; index < STEPS; index++) {
+			recipe.getSteps().add(newStep(null, index));
+		}
+
+		for (int index = 0; index < CATEGORIES; index++) {
+			recipe.getCategories().add(categories.get(index));
+		}
+
+		return recipeService.saveRecipe(recipe);
+	}
+
+	@Benchmark
+	public Recipe addRecipePiecemeal() {
+		Recipe recipe = recipeService.addRecipe(newRecipe());
+		Integer recipeId = recipe.getRecipeId();
+
+		for (int index = 0; index < ingredients; index++) {
+			recipeService.addIngredient(newIngredient(recipeId, index));
+		}
+
+		for (int index = 0; index < STEPS; index++) {
+			recipeService.addStep(newStep(recipeId, index));
+		}
+
+		for (int index = 0; index < CATEGORIES; index++) {
+			recipeService.addCategoryToRecipe(recipeId, categories.get(index).getCategoryName());
+		}
+
+		return recipe;
+	}
+
+	private static Recipe newRecipe() {
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		Recipe recipe = new Recipe();
+
+		recipe.setRecipeName(BenchmarkData.recipeName(random));
+		recipe.setNotes("Saved by RecipeSaveBenchmark");
+		recipe.setNumServings(1 + random.nextInt(8));
+		recipe.setPrepTime(LocalTime.of(0, random.nextInt(60)));
+		recipe.setCookTime(LocalTime.of(random.nextInt(4), random.nextInt(60)));
+		return recipe;
+	}
+
+	private static Ingredient newIngredient(Integer recipeId, int index) {
+		Ingredient ingredient = new Ingredient();
+		Unit unit = new Unit();
+
+		unit.setUnitId(1 + index % UNITS);
+		ingredient.setRecipeId(recipeId);
+		ingredient.setUnit(unit);
+		ingredient.setIngredientName("ingredient " + index);
+		ingredient.setAmount(BigDecimal.valueOf(1 + index % 4));
+		return ingredient;
+	}
+
+	private static Step newStep(Integer recipeId, int index) {
+		Step step = new Step();
+
+		step.setRecipeId(recipeId);
+		step.setStepText("Benchmark step " + (index + 1));
+		return step;
+	}
+
+} // end CLASS
@@ -0,0 +1,68 @@
+package recipes.benchmark;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.Objects;
+
+/*
+ * The original reflective DaoBase.extract implementation, kept here only as the
+ * baseline for MapperBenchmark.
+ */
+public class ReflectiveExtractor {
+
+	public <T> T extract(ResultSet rs, Class<T> classType) {
+		try {
+			Constructor<T> con = classType.getConstructor();
+			T obj = con.newInstance();
+
+			for (Field field : classType.getDeclaredFields()) {
+				String colName = camelCaseToSnakeCase(field.getName());
+				Class<?> fieldType = field.getType();
+
+				field.setAccessible(true);
+				Object fieldValue = null;
+
+				try {
+					fieldValue = rs.getObject(colName);
+				} catch (SQLException e) {
+					// The field name isn't in the result set.
+				}
+
+				if (Objects.nonNull(fieldValue)) {
+					if (fieldValue instanceof Time && fieldType.equals(LocalTime.class)) {
+						fieldValue = ((Time) fieldValue).toLocalTime();
+					} else if (fieldValue instanceof Timestamp && fieldType.equals(LocalDateTime.class)) {
+						fieldValue = ((Timestamp) fieldValue).toLocalDateTime();
+					}
+
+					field.set(obj, fieldValue);
+				}
+			}
+
+			return obj;
+		} catch (Exception e) {
+			throw new IllegalStateException("Unable to create object of type " + classType.getName(), e);
+		}
+	}
+
+	private String camelCaseToSnakeCase(String identifier) {
+		StringBuilder nameBuilder = new StringBuilder();
+
+		for (char ch : identifier.toCharArray()) {
+			if (Character.isUpperCase(ch)) {
+				nameBuilder.append('_').append(Character.toLowerCase(ch));
+			} else {
+				nameBuilder.append(ch);
+			}
+		}
+
+		return nameBuilder.toString();
+	}
+
+} // end CLASS
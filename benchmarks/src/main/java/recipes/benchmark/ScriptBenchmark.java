@@ -0,0 +1,62 @@
+package recipes.benchmark;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import recipes.service.SqlScriptReader;
+
+/*
+ * Splitting a seed script into statements with SqlScriptReader, the parser
+ * RecipeService uses to load recipe_schema.sql and recipe_data.sql. The script
+ * is generated by RecipeDataset, with comments mixed in, so the cost should grow
+ * linearly with the number of recipes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ScriptBenchmark {
+
+	@Param({ "1000", "10000", "100000" })
+	private int recipes;
+
+	private String script;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		StringBuilder builder = new StringBuilder();
+		RecipeDataset dataset = new RecipeDataset(recipes);
+
+		while (dataset.hasNext()) {
+			builder.append("-- generated block\n").append(dataset.next()).append(";\n\n");
+		}
+		script = builder.toString();
+	}
+
+	@Benchmark
+	public void splitStatements(Blackhole bh) throws IOException {
+		try (SqlScriptReader reader = new SqlScriptReader(new StringReader(script))) {
+			while (reader.hasNext()) {
+				bh.consume(reader.next());
+			}
+		}
+	}
+
+} // end CLASS
@@ -3,19 +3,18 @@
  */
 package provided.util;
 
-import java.lang.reflect.Constructor;
-import java.lang.reflect.Field;
 import java.math.BigDecimal;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
-import java.sql.Time;
-import java.sql.Timestamp;
 import java.sql.Types;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 
 /**
@@ -25,6 +24,30 @@ import java.util.Objects;
  *
  */
 public abstract class DaoBase {
+  /**
+   * The binder for each supported parameter class. Looking up the class in this map replaces a
+   * chain of class comparisons plus a switch on the SQL type for every bound value. The java.time
+   * types are bound natively using the JDBC 4.2 {@link PreparedStatement#setObject(int, Object,
+   * int)} overload.
+   */
+  // @formatter:off
+  private static final Map<Class<?>, ParameterBinder> BINDERS = Map.of(
+      Integer.class, new ParameterBinder(Types.INTEGER,
+          (stmt, index, value) -> stmt.setInt(index, (Integer)value)),
+      Long.class, new ParameterBinder(Types.BIGINT,
+          (stmt, index, value) -> stmt.setLong(index, (Long)value)),
+      String.class, new ParameterBinder(Types.VARCHAR,
+          (stmt, index, value) -> stmt.setString(index, (String)value)),
+      Double.class, new ParameterBinder(Types.DOUBLE,
+          (stmt, index, value) -> stmt.setDouble(index, (Double)value)),
+      BigDecimal.class, new ParameterBinder(Types.DECIMAL,
+          (stmt, index, value) -> stmt.setBigDecimal(index, (BigDecimal)value)),
+      LocalTime.class, new ParameterBinder(Types.TIME,
+          (stmt, index, value) -> stmt.setObject(index, value, Types.TIME)),
+      LocalDateTime.class, new ParameterBinder(Types.TIMESTAMP,
+          (stmt, index, value) -> stmt.setObject(index, value, Types.TIMESTAMP)));
+  // @formatter:on
+
   /**
    * This starts a MySQL transaction. Normally MySQL starts a transaction before every request and
    * commits it after each request. By turning auto-commit off, the transaction is only committed
@@ -38,23 +61,35 @@ public abstract class DaoBase {
   }
 
   /**
-   * Commit the transaction. This will write all the changes, if any, to the database.
+   * Commit the transaction. This will write all the changes, if any, to the database. The commit
+   * is recorded as a {@link TransactionEvent} when a flight recording is running.
    * 
    * @param conn The connection on which to commit the transaction.
    * @throws SQLException Thrown if an error occurs committing the transaction.
    */
   protected void commitTransaction(Connection conn) throws SQLException {
+    TransactionEvent event = new TransactionEvent();
+
+    event.begin();
     conn.commit();
+    event.outcome = "commit";
+    event.commit();
   }
 
   /**
-   * Rolls back the changes so that nothing is committed.
+   * Rolls back the changes so that nothing is committed. The rollback is recorded as a
+   * {@link TransactionEvent} when a flight recording is running.
    * 
    * @param conn The connection on which to roll back the transaction.
    * @throws SQLException Thrown if an error occurs rolling back the transaction.
    */
   protected void rollbackTransaction(Connection conn) throws SQLException {
+    TransactionEvent event = new TransactionEvent();
+
+    event.begin();
     conn.rollback();
+    event.outcome = "rollback";
+    event.commit();
   }
 
   /**
@@ -73,84 +108,46 @@ public abstract class DaoBase {
    */
   protected void setParameter(PreparedStatement stmt, int parameterIndex, Object value,
       Class<?> classType) throws SQLException {
-    int sqlType = convertJavaClassToSqlType(classType);
-
-    if(Objects.isNull(value)) {
-      stmt.setNull(parameterIndex, sqlType);
-    }
-    else {
-      switch(sqlType) {
-        case Types.DECIMAL:
-          stmt.setBigDecimal(parameterIndex, (BigDecimal)value);
-          break;
-
-        case Types.DOUBLE:
-          stmt.setDouble(parameterIndex, (Double)value);
-          break;
-
-        case Types.INTEGER:
-          stmt.setInt(parameterIndex, (Integer)value);
-          break;
-
-        case Types.OTHER:
-          stmt.setObject(parameterIndex, value);
-          break;
-
-        case Types.VARCHAR:
-          stmt.setString(parameterIndex, (String)value);
-          break;
-
-        default:
-          throw new DaoException("Unknown parameter type: " + classType);
-      }
-    }
-  }
-
-  /**
-   * Converts from a Java class to a java.sql.Types value.
-   * 
-   * @param classType The class type
-   * @return A java.sql.Types value
-   */
-  private int convertJavaClassToSqlType(Class<?> classType) {
-    if(Integer.class.equals(classType)) {
-      return Types.INTEGER;
-    }
-
-    if(String.class.equals(classType)) {
-      return Types.VARCHAR;
-    }
+    ParameterBinder binder = BINDERS.get(classType);
 
-    if(Double.class.equals(classType)) {
-      return Types.DOUBLE;
+    if(Objects.isNull(binder)) {
+      throw new DaoException("Unsupported class type: " + classType.getName());
     }
 
-    if(BigDecimal.class.equals(classType)) {
-      return Types.DECIMAL;
+    if(Objects.isNull(value)) {
+      stmt.setNull(parameterIndex, binder.sqlType);
     }
-
-    if(LocalTime.class.equals(classType)) {
-      return Types.OTHER;
+    else {
+      binder.setter.set(stmt, parameterIndex, value);
     }
-
-    throw new DaoException("Unsupported class type: " + classType.getName());
   }
 
   /**
-   * This retrieves the number of child rows and adds one to the value. It is used to set the order
-   * of a child row. For a *real* application, a more sophisticated approach is desired. This method
-   * does not allow for entity reordering and does not allow for an entity to be deleted.
+   * This returns the highest order value of the child rows plus one, and locks the parent row until
+   * the transaction ends. Locking the parent rather than the child rows matters when the parent has
+   * no children yet: a locking read of an empty child range only takes gap locks, which don't
+   * exclude each other, so two callers would both read 1 and then deadlock on their INSERTs. With
+   * the parent row locked, concurrent callers for the same parent are serialized and the child rows
+   * are read after the previous caller committed. Gaps left by deleted rows are tolerated. It must
+   * be called inside a transaction. If the parent doesn't exist, nothing is locked and 1 is
+   * returned.
    * 
    * @param conn The connection
    * @param id The ID of the parent entity
+   * @param parentTableName The name of the parent table, whose row is locked
    * @param tableName The name of the table with the child rows
-   * @param idName The name of the parent ID field
-   * @return The count of the entities attached to the parent plus one
+   * @param idName The name of the parent ID field, in both tables
+   * @param orderName The name of the order field
+   * @return The highest order attached to the parent plus one, or 1 if there are no children
    * @throws SQLException Thrown if an error occurs.
    */
-  protected Integer getNextSequenceNumber(Connection conn, Integer id, String tableName,
-      String idName) throws SQLException {
-    String sql = "SELECT COUNT(*) FROM " + tableName + " WHERE " + idName + " = ?";
+  protected Integer lockNextSequenceNumber(Connection conn, Integer id, String parentTableName,
+      String tableName, String idName, String orderName) throws SQLException {
+    // Only the highest child row is read (and locked). A parent without children comes back with
+    // a null order, which getInt() reads as 0.
+    String sql = "SELECT c." + orderName + " FROM " + parentTableName + " p LEFT JOIN " + tableName
+        + " c ON c." + idName + " = p." + idName + " WHERE p." + idName + " = ? ORDER BY c."
+        + orderName + " DESC LIMIT 1 FOR UPDATE";
 
     try(PreparedStatement stmt = conn.prepareStatement(sql)) {
       setParameter(stmt, 1, id, Integer.class);
@@ -166,44 +163,55 @@ public abstract class DaoBase {
   }
 
   /**
-   * This returns the integer primary key value of the last row inserted into the given table. It
-   * allows the ID to be inserted into the entity object after inserting it into the table.
+   * This returns the integer primary key generated by the insert that was just executed on the
+   * statement. The statement must have been prepared with {@link Statement#RETURN_GENERATED_KEYS}.
+   * The key is returned with the insert's response, so it does not cost another round trip.
    * 
-   * The other way of doing this is to call {@link Statement#getGeneratedKeys()}, but this returns a
-   * result set that needs to be parsed for the ID. It's not really any easier than this approach
-   * but should be closer to database-agnostic.
-   * 
-   * @param conn The connection
-   * @param table The name of the table on which to get the last inserted primary key value
+   * @param stmt The statement that executed the insert
    * @return The primary key value
-   * @throws SQLException Thrown if an error occurs
+   * @throws SQLException Thrown if an error occurs or no key was generated
    */
-  protected Integer getLastInsertId(Connection conn, String table) throws SQLException {
-    String sql = String.format("SELECT LAST_INSERT_ID() FROM %s", table);
+  protected Integer getGeneratedId(Statement stmt) throws SQLException {
+    try(ResultSet rs = stmt.getGeneratedKeys()) {
+      if(rs.next()) {
+        return rs.getInt(1);
+      }
 
-    try(Statement stmt = conn.createStatement()) {
-      try(ResultSet rs = stmt.executeQuery(sql)) {
-        if(rs.next()) {
-          return rs.getInt(1);
-        }
+      throw new SQLException("Unable to retrieve the primary key value. No generated keys!");
+    }
+  }
+
+  /**
+   * This returns all of the integer primary keys generated by the batch that was just executed on
+   * the statement, in the order the rows were added to the batch. The statement must have been
+   * prepared with {@link Statement#RETURN_GENERATED_KEYS}.
+   * 
+   * @param stmt The statement that executed the batch
+   * @return The primary key values
+   * @throws SQLException Thrown if an error occurs
+   */
+  protected List<Integer> getGeneratedIds(Statement stmt) throws SQLException {
+    List<Integer> ids = new ArrayList<>();
 
-        throw new SQLException("Unable to retrieve the primary key value. No result set!");
+    try(ResultSet rs = stmt.getGeneratedKeys()) {
+      while(rs.next()) {
+        ids.add(rs.getInt(1));
       }
     }
+
+    return ids;
   }
 
   /**
    * This extracts an object of the given type from a result set. The object must have a
-   * zero-argument constructor. It builds an object from a result set using reflection as follows:
-   * <ol>
-   * <li>The zero-argument constructor is obtained.</li>
-   * <li>An object of the given class type is created.</li>
-   * <li>A list of fields is obtained using reflection.</li>
-   * <li>The field name is converted from Java naming to SQL naming conventions (camel case to snake
+   * zero-argument constructor. Each field is populated from the column with the same name, after
+   * the field name is converted from Java naming to SQL naming conventions (camel case to snake
    * case). Obviously, for this to work, the Java name must match the column name. So, if the Java
-   * name is numServings, the column name must be num_servings.</li>
-   * <li>The value is assigned to the field in the object.</li>
-   * </ol>
+   * name is numServings, the column name must be num_servings.
+   * 
+   * The work of matching fields to columns is done by a {@link RowMapper}, which is computed once
+   * per class and result set shape and then cached. When extracting many rows from the same result
+   * set, obtain the mapper once with {@link #rowMapper(ResultSet, Class)} instead.
    * 
    * Example: if a query returns values for a recipe, a Recipe object is returned. So:
    * 
@@ -232,79 +240,47 @@ public abstract class DaoBase {
    */
   protected <T> T extract(ResultSet rs, Class<T> classType) {
     try {
-      /* Obtain the constructor and create an object of the correct type. */
-      Constructor<T> con = classType.getConstructor();
-      T obj = con.newInstance();
-
-      /* Get the list of fields and loop through them. */
-      for(Field field : classType.getDeclaredFields()) {
-        String colName = camelCaseToSnakeCase(field.getName());
-        Class<?> fieldType = field.getType();
-
-        /*
-         * Set the field accessible flag which means that we can populate even private fields
-         * without using the setter.
-         */
-        field.setAccessible(true);
-        Object fieldValue = null;
-
-        try {
-          fieldValue = rs.getObject(colName);
-        }
-        catch(SQLException e) {
-          /*
-           * An exception caught here means that the field name isn't in the result set. Don't take
-           * any action.
-           */
-        }
-
-        /*
-         * Only set the value in the object if there is a value with the same name in the result
-         * set. This will preserve instance variables (like lists) that are assigned values when the
-         * object is created.
-         */
-        if(Objects.nonNull(fieldValue)) {
-          /*
-           * Convert the following types: Time -> LocalTime, and Timestamp -> LocalDateTime.
-           */
-          if(fieldValue instanceof Time && fieldType.equals(LocalTime.class)) {
-            fieldValue = ((Time)fieldValue).toLocalTime();
-          }
-          else if(fieldValue instanceof Timestamp && fieldType.equals(LocalDateTime.class)) {
-            fieldValue = ((Timestamp)fieldValue).toLocalDateTime();
-          }
-
-          field.set(obj, fieldValue);
-        }
-      }
-
-      return obj;
-
+      return rowMapper(rs, classType).map(rs);
     }
-    catch(Exception e) {
+    catch(SQLException e) {
       throw new DaoException("Unable to create object of type " + classType.getName(), e);
     }
   }
 
   /**
-   * This converts a camel case value (rowInsertTime) to snake case (row_insert_time).
+   * This returns the cached {@link RowMapper} for the given class and the columns of the given
+   * result set. Call it once before looping through the rows.
    * 
-   * @param identifier The name in camel case to convert.
-   * @return The name converted to snake case.
+   * @param <T> The Generic for the type of object the mapper creates.
+   * @param rs The result set. Only the metadata is read.
+   * @param classType The actual class type of the objects to create.
+   * @return The row mapper.
+   * @throws SQLException Thrown if the result set metadata cannot be read.
    */
-  private String camelCaseToSnakeCase(String identifier) {
-    StringBuilder nameBuilder = new StringBuilder();
+  protected <T> RowMapper<T> rowMapper(ResultSet rs, Class<T> classType) throws SQLException {
+    return RowMapper.forResultSet(rs, classType);
+  }
 
-    for(char ch : identifier.toCharArray()) {
-      if(Character.isUpperCase(ch)) {
-        nameBuilder.append('_').append(Character.toLowerCase(ch));
-      }
-      else {
-        nameBuilder.append(ch);
-      }
+  /**
+   * The SQL type used to bind a null value of a parameter class, plus the typed setter used for
+   * non-null values.
+   */
+  private static final class ParameterBinder {
+    private final int sqlType;
+    private final Setter setter;
+
+    ParameterBinder(int sqlType, Setter setter) {
+      this.sqlType = sqlType;
+      this.setter = setter;
     }
+  }
 
-    return nameBuilder.toString();
+  /**
+   * Binds a non-null value with the setter that matches its type.
+   */
+  @FunctionalInterface
+  private interface Setter {
+    void set(PreparedStatement stmt, int parameterIndex, Object value) throws SQLException;
   }
 
   /**
@@ -0,0 +1,309 @@
+/**
+ *
+ */
+package provided.util;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+import provided.util.DaoBase.DaoException;
+
+/**
+ * This class copies the columns of a result set row into a new entity object. It does the same job
+ * as the original reflective version of {@link DaoBase#extract(ResultSet, Class)} but does all of
+ * the expensive work once instead of once per field per row:
+ * <ol>
+ * <li>The entity's fields are matched to result set columns (using the camel case to snake case
+ * naming convention) and the column indexes are resolved up front. Fields without a matching
+ * column are simply not mapped, so no exception is thrown and swallowed for every row.</li>
+ * <li>The zero-argument constructor and the field setters are resolved to {@link MethodHandle}s.
+ * </li>
+ * <li>A typed column reader is chosen for each field, so Integer fields use
+ * {@link ResultSet#getInt(int)}, String fields use {@link ResultSet#getString(int)}, etc.</li>
+ * </ol>
+ *
+ * Mappers are cached per entity class and result set shape (the list of column labels), so a
+ * mapper is computed once and reused by every query that returns the same columns.
+ *
+ * <pre>
+ * RowMapper&lt;Recipe&gt; mapper = RowMapper.forResultSet(rs, Recipe.class);
+ *
+ * while(rs.next()) {
+ *   recipes.add(mapper.map(rs));
+ * }
+ * </pre>
+ *
+ * @param <T> The entity type created by this mapper.
+ */
+public final class RowMapper<T> {
+  private static final Map<Shape, RowMapper<?>> CACHE = new ConcurrentHashMap<>();
+
+  private final MethodHandle constructor;
+  private final int[] columnIndexes;
+  private final ColumnReader[] readers;
+  private final MethodHandle[] setters;
+
+  private RowMapper(MethodHandle constructor, int[] columnIndexes, ColumnReader[] readers,
+      MethodHandle[] setters) {
+    this.constructor = constructor;
+    this.columnIndexes = columnIndexes;
+    this.readers = readers;
+    this.setters = setters;
+  }
+
+  /**
+   * Returns the mapper for the given entity class and the columns of the given result set. The
+   * mapper is computed the first time a class/column combination is seen and cached afterwards.
+   *
+   * @param <T> The entity type.
+   * @param rs The result set. Only its metadata is used.
+   * @param classType The entity class. It must have a zero-argument constructor.
+   * @return The mapper.
+   * @throws SQLException Thrown if the result set metadata cannot be read.
+   */
+  @SuppressWarnings("unchecked")
+  public static <T> RowMapper<T> forResultSet(ResultSet rs, Class<T> classType)
+      throws SQLException {
+    ResultSetMetaData meta = rs.getMetaData();
+    String[] labels = new String[meta.getColumnCount()];
+
+    for(int index = 0; index < labels.length; index++) {
+      labels[index] = meta.getColumnLabel(index + 1).toLowerCase(Locale.ROOT);
+    }
+
+    return (RowMapper<T>)CACHE.computeIfAbsent(new Shape(classType, labels), RowMapper::compile);
+  }
+
+  /**
+   * Creates an entity object from the current row of the result set. As with the reflective
+   * version, a field is only assigned if the column value is not null, so field initializers (like
+   * lists) are preserved.
+   *
+   * @param rs The result set, positioned on the row to map by the caller.
+   * @return The populated entity.
+   * @throws SQLException Thrown if a column value cannot be read.
+   */
+  @SuppressWarnings("unchecked")
+  public T map(ResultSet rs) throws SQLException {
+    RowMappingEvent event = new RowMappingEvent();
+    Object obj;
+
+    event.begin();
+
+    try {
+      obj = constructor.invoke();
+    }
+    catch(Throwable e) {
+      throw new DaoException("Unable to create object of type " + constructor.type().returnType(),
+          e);
+    }
+
+    for(int index = 0; index < setters.length; index++) {
+      Object value = readers[index].read(rs, columnIndexes[index]);
+
+      if(Objects.nonNull(value)) {
+        try {
+          setters[index].invokeExact(obj, value);
+        }
+        catch(Throwable e) {
+          throw new DaoException("Unable to set field value on " + obj.getClass().getName(), e);
+        }
+      }
+    }
+
+    if(event.shouldCommit()) {
+      event.entityClass = obj.getClass();
+      event.columnCount = setters.length;
+      event.commit();
+    }
+
+    return (T)obj;
+  }
+
+  /**
+   * Builds the mapper for a class/column combination. This is the only place reflection is used.
+   */
+  private static RowMapper<?> compile(Shape shape) {
+    Class<?> classType = shape.classType;
+
+    try {
+      MethodHandles.Lookup lookup =
+          MethodHandles.privateLookupIn(classType, MethodHandles.lookup());
+
+      MethodHandle constructor = lookup.findConstructor(classType, MethodType.methodType(void.class))
+          .asType(MethodType.methodType(Object.class));
+
+      /* The first column with a given label wins, just like ResultSet.getObject(String). */
+      Map<String, Integer> columns = new HashMap<>();
+
+      for(int index = shape.labels.length - 1; index >= 0; index--) {
+        columns.put(shape.labels[index], index + 1);
+      }
+
+      List<Integer> indexes = new ArrayList<>();
+      List<ColumnReader> readers = new ArrayList<>();
+      List<MethodHandle> setters = new ArrayList<>();
+
+      for(Field field : classType.getDeclaredFields()) {
+        int modifiers = field.getModifiers();
+
+        if(Modifier.isStatic(modifiers) || Modifier.isFinal(modifiers)) {
+          continue;
+        }
+
+        Integer columnIndex = columns.get(camelCaseToSnakeCase(field.getName()));
+
+        if(Objects.isNull(columnIndex)) {
+          continue;
+        }
+
+        MethodHandle setter = lookup.unreflectSetter(field)
+            .asType(MethodType.methodType(void.class, Object.class, Object.class));
+
+        indexes.add(columnIndex);
+        readers.add(readerFor(field.getType()));
+        setters.add(setter);
+      }
+
+      return new RowMapper<>(constructor, indexes.stream().mapToInt(Integer::intValue).toArray(),
+          readers.toArray(new ColumnReader[0]), setters.toArray(new MethodHandle[0]));
+    }
+    catch(ReflectiveOperationException | RuntimeException e) {
+      throw new DaoException("Unable to create a row mapper for type " + classType.getName(), e);
+    }
+  }
+
+  /**
+   * Selects the result set getter to use for a field type. Anything not listed here is read with
+   * {@link ResultSet#getObject(int)}.
+   */
+  private static ColumnReader readerFor(Class<?> fieldType) {
+    if(Integer.class.equals(fieldType)) {
+      return (rs, index) -> {
+        int value = rs.getInt(index);
+        return rs.wasNull() ? null : value;
+      };
+    }
+
+    if(Long.class.equals(fieldType)) {
+      return (rs, index) -> {
+        long value = rs.getLong(index);
+        return rs.wasNull() ? null : value;
+      };
+    }
+
+    if(Double.class.equals(fieldType)) {
+      return (rs, index) -> {
+        double value = rs.getDouble(index);
+        return rs.wasNull() ? null : value;
+      };
+    }
+
+    if(String.class.equals(fieldType)) {
+      return ResultSet::getString;
+    }
+
+    if(BigDecimal.class.equals(fieldType)) {
+      return ResultSet::getBigDecimal;
+    }
+
+    /* Convert the following types: Time -> LocalTime, and Timestamp -> LocalDateTime. */
+    if(LocalTime.class.equals(fieldType)) {
+      return (rs, index) -> {
+        Object value = rs.getObject(index);
+        return value instanceof Time ? ((Time)value).toLocalTime() : value;
+      };
+    }
+
+    if(LocalDateTime.class.equals(fieldType)) {
+      return (rs, index) -> {
+        Object value = rs.getObject(index);
+        return value instanceof Timestamp ? ((Timestamp)value).toLocalDateTime() : value;
+      };
+    }
+
+    return ResultSet::getObject;
+  }
+
+  /**
+   * This converts a camel case value (rowInsertTime) to snake case (row_insert_time).
+   *
+   * @param identifier The name in camel case to convert.
+   * @return The name converted to snake case.
+   */
+  private static String camelCaseToSnakeCase(String identifier) {
+    StringBuilder nameBuilder = new StringBuilder();
+
+    for(char ch : identifier.toCharArray()) {
+      if(Character.isUpperCase(ch)) {
+        nameBuilder.append('_').append(Character.toLowerCase(ch));
+      }
+      else {
+        nameBuilder.append(ch);
+      }
+    }
+
+    return nameBuilder.toString();
+  }
+
+  /**
+   * Reads a single column value from the current row.
+   */
+  @FunctionalInterface
+  private interface ColumnReader {
+    Object read(ResultSet rs, int columnIndex) throws SQLException;
+  }
+
+  /**
+   * The cache key: an entity class plus the lower-cased column labels of a result set.
+   */
+  private static final class Shape {
+    private final Class<?> classType;
+    private final String[] labels;
+    private final int hash;
+
+    Shape(Class<?> classType, String[] labels) {
+      this.classType = classType;
+      this.labels = labels;
+      this.hash = 31 * classType.hashCode() + Arrays.hashCode(labels);
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if(this == obj) {
+        return true;
+      }
+
+      if(!(obj instanceof Shape)) {
+        return false;
+      }
+
+      Shape other = (Shape)obj;
+      return classType.equals(other.classType) && Arrays.equals(labels, other.labels);
+    }
+  }
+}
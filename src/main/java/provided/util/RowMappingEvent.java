@@ -0,0 +1,31 @@
+/**
+ * 
+ */
+package provided.util;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR event for copying one result set row into an entity with a {@link RowMapper}. One event is
+ * emitted per row, so it is disabled unless a recording's settings turn it on
+ * (recipes.RowMapping#enabled=true).
+ */
+@Name("recipes.RowMapping")
+@Label("Row Mapping")
+@Description("Copying one result set row into an entity object")
+@Category({"Recipes", "Database"})
+@Enabled(false)
+@StackTrace(false)
+class RowMappingEvent extends Event {
+  @Label("Entity Class")
+  Class<?> entityClass;
+
+  @Label("Mapped Columns")
+  int columnCount;
+}
@@ -0,0 +1,27 @@
+/**
+ * 
+ */
+package provided.util;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR event for ending a transaction with {@link DaoBase#commitTransaction(java.sql.Connection)} or
+ * {@link DaoBase#rollbackTransaction(java.sql.Connection)}. The duration is the commit or rollback
+ * round trip only.
+ */
+@Name("recipes.Transaction")
+@Label("Transaction End")
+@Description("Committing or rolling back a transaction")
+@Category({"Recipes", "Database"})
+@StackTrace(false)
+class TransactionEvent extends Event {
+  @Label("Outcome")
+  @Description("commit or rollback")
+  String outcome;
+}
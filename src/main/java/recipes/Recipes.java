@@ -4,19 +4,28 @@ import java.math.BigDecimal;
 import java.time.LocalTime;
 import java.util.List;
 import java.util.Objects;
+import java.util.Optional;
 import java.util.Scanner;
 
+import recipes.dao.DbConnection;
 import recipes.entity.Category;
 import recipes.entity.Ingredient;
 import recipes.entity.Recipe;
+import recipes.entity.RecipeSearchHit;
+import recipes.entity.RecipeSummaries;
 import recipes.entity.Step;
 import recipes.entity.Unit;
 import recipes.exception.DbException;
+import recipes.metrics.MetricsServer;
+import recipes.service.CategoryFacetResult;
 import recipes.service.RecipeService;
 
 public class Recipes {
+	private static final int SEARCH_LIMIT = 20;
+
 	private Scanner scanner = new Scanner(System.in);
 	private RecipeService recipeService = new RecipeService();
+	private Optional<MetricsServer> metricsServer = MetricsServer.startIfConfigured(recipeService);
 	private Recipe curRecipe;
 
 	// @formatter:off
@@ -29,7 +38,11 @@ public class Recipes {
 		"6) Add step to current recipe",
 		"7) Add category to current recipe",
 		"8) Modify step in current recipe",
-		"9) Delete a recipe"
+		"9) Delete a recipe",
+		"10) Search recipes",
+		"11) Find recipes I can cook",
+		"12) Browse recipes by category",
+		"13) Upgrade database schema"
 	);
 	// @formatter:on
 
@@ -41,6 +54,9 @@ public class Recipes {
 	private void displayMenu() {
 		boolean done = false;
 
+		metricsServer.ifPresent(server -> System.out
+				.println("\nMetrics available at http://localhost:" + server.getPort() + "/metrics"));
+
 		while (!done) {
 			try {
 
@@ -86,6 +102,22 @@ public class Recipes {
 					deleteRecipe();
 					break;
 
+				case 10:
+					searchRecipes();
+					break;
+
+				case 11:
+					findCookableRecipes();
+					break;
+
+				case 12:
+					browseByCategory();
+					break;
+
+				case 13:
+					migrateSchema();
+					break;
+
 				default:
 					System.out.println("\n" + operation + " is not valid. Please try again.");
 					break;
@@ -98,6 +130,74 @@ public class Recipes {
 
 	} // end displayMenu
 
+	private void searchRecipes() {
+		String query = getStringInput("Enter words to search for");
+
+		if (Objects.nonNull(query)) {
+			List<RecipeSearchHit> hits = recipeService.searchRecipes(query, SEARCH_LIMIT);
+
+			System.out.println("\nMatching recipes: ");
+
+			hits.forEach(hit -> System.out.println("   " + hit.getRecipeId() + ": " + hit.getRecipeName()));
+
+			if (hits.isEmpty()) {
+				System.out.println("   (none)");
+			}
+		}
+	} // end searchRecipes
+
+	private void findCookableRecipes() {
+		String onHand = getStringInput("Enter the ingredients you have, separated by commas");
+
+		if (Objects.nonNull(onHand)) {
+			Integer maxMissing = getIntInput("Enter how many ingredients may be missing (default 0)");
+			List<Integer> recipeIds = recipeService.findRecipesCookableWith(List.of(onHand.split(",")),
+					Objects.isNull(maxMissing) ? 0 : maxMissing);
+			RecipeSummaries summaries = recipeService.fetchRecipeSummaries();
+
+			System.out.println("\nRecipes you can cook: ");
+
+			for (Integer recipeId : recipeIds) {
+				int index = summaries.indexOf(recipeId);
+
+				if (index >= 0) {
+					System.out.println("   " + recipeId + ": " + summaries.getRecipeName(index));
+				}
+			}
+
+			if (recipeIds.isEmpty()) {
+				System.out.println("   (none)");
+			}
+		}
+	} // end findCookableRecipes
+
+	private void browseByCategory() {
+		String input = getStringInput("Enter categories separated by commas (blank for all)");
+		List<String> names = Objects.isNull(input) ? List.of() : List.of(input.split(","));
+		CategoryFacetResult result = recipeService.filterByCategories(names);
+		RecipeSummaries summaries = recipeService.fetchRecipeSummaries();
+
+		System.out.println("\nMatching recipes: ");
+
+		for (Integer recipeId : result.getRecipeIds()) {
+			int index = summaries.indexOf(recipeId);
+
+			if (index >= 0) {
+				System.out.println("   " + recipeId + ": " + summaries.getRecipeName(index));
+			}
+		}
+
+		System.out.println("\nNarrow by category: ");
+
+		for (Category category : recipeService.fetchCategories()) {
+			int count = result.getCount(category.getCategoryId());
+
+			if (count > 0) {
+				System.out.println("   " + category.getCategoryName() + " (" + count + ")");
+			}
+		}
+	} // end browseByCategory
+
 	private void deleteRecipe() {
 		listRecipes();
 
@@ -137,6 +237,7 @@ public class Recipes {
 			if (Objects.nonNull(stepText)) {
 				Step step = new Step();
 
+				step.setRecipeId(curRecipe.getRecipeId());
 				step.setStepId(stepId);
 				step.setStepText(stepText);
 
@@ -227,17 +328,14 @@ public class Recipes {
 	} // end addIngredientToCurrentRecipe
 
 	private void setCurrentRecipe() {
-		List<Recipe> recipes = listRecipes();
+		RecipeSummaries recipes = listRecipes();
 
 		Integer recipeId = getIntInput("Select a recipe ID");
 
 		curRecipe = null;
 
-		for (Recipe recipe : recipes) {
-			if (recipe.getRecipeId().equals(recipeId)) {
-				curRecipe = recipeService.fetchRecipeById(recipeId);
-				break;
-			}
+		if (recipes.contains(recipeId)) {
+			curRecipe = recipeService.fetchRecipeById(recipeId);
 		}
 		if (Objects.isNull(curRecipe)) {
 			System.out.println("\nInvalid recipe selected.");
@@ -246,6 +344,8 @@ public class Recipes {
 
 	private boolean exitMenu() {
 		System.out.println("\nExiting the menu. TTFN!");
+		metricsServer.ifPresent(MetricsServer::close);
+		DbConnection.shutdown();
 		return true;
 	} // end exitMenu
 
@@ -254,12 +354,25 @@ public class Recipes {
 		System.out.println("\nTables created and populated!");
 	} // end createTables
 
-	private List<Recipe> listRecipes() {
-		List<Recipe> recipes = recipeService.fetchRecipes();
+	private void migrateSchema() {
+		List<String> migrated = recipeService.migrateSchema();
+
+		if (migrated.isEmpty()) {
+			System.out.println("\nThe schema is up to date.");
+		} else {
+			System.out.println("\nApplied migrations: ");
+			migrated.forEach(migration -> System.out.println("   " + migration));
+		}
+	} // end migrateSchema
+
+	private RecipeSummaries listRecipes() {
+		RecipeSummaries recipes = recipeService.fetchRecipeSummaries();
 
 		System.out.println("\nRecipes: ");
 
-		recipes.forEach(recipe -> System.out.println("   " + recipe.getRecipeId() + ": " + recipe.getRecipeName()));
+		for (int index = 0; index < recipes.size(); index++) {
+			System.out.println("   " + recipes.getRecipeId(index) + ": " + recipes.getRecipeName(index));
+		}
 
 		return recipes;
 	} // end listRecipes
@@ -0,0 +1,28 @@
+package recipes.dao;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/*
+ * JFR event covering the wait for a pooled connection in DbConnection. Like
+ * the other recipes.* events it costs next to nothing unless a recording has
+ * it enabled.
+ */
+@Name("recipes.ConnectionAcquire")
+@Label("Connection Acquire")
+@Description("Time spent borrowing a connection from the pool")
+@Category({ "Recipes", "Database" })
+@StackTrace(false)
+class ConnectionAcquireEvent extends Event {
+	@Label("Acquired")
+	@Description("False if no connection was free and the caller went without one")
+	boolean acquired;
+
+	@Label("Active Connections")
+	int activeConnections;
+
+} // end CLASS
@@ -0,0 +1,495 @@
+package recipes.dao;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+import recipes.exception.DbException;
+import recipes.metrics.Metrics;
+
+/*
+ * A small, bounded JDBC connection pool. Physical connections are created with
+ * DriverManager and handed out wrapped in a proxy whose close() method returns
+ * the connection to the pool instead of closing it. That way every DAO method
+ * can keep using try-with-resources exactly as before.
+ *
+ * - A fair semaphore bounds the number of borrowed connections to maxSize.
+ *   Callers wait at most acquireTimeoutMillis for a permit.
+ * - Idle connections are kept in a LIFO deque so the most recently used (and
+ *   therefore warmest) connection is handed out first.
+ * - A connection that has been idle longer than validationIntervalMillis is
+ *   checked with isValid() before it is handed out.
+ * - A background housekeeper evicts connections idle longer than
+ *   idleTimeoutMillis (never dropping below minSize), tops the pool back up to
+ *   minSize and reports connections held longer than leakThresholdMillis
+ *   (0 turns leak detection and its per-borrow stack capture off).
+ * - Borrow waits, transactions and statement executions are timed into
+ *   Metrics.registry(); statements slower than slowQueryMillis are logged.
+ * - Auto-commit is not switched back on when a connection is returned. Every
+ *   DAO method turns it off again on the next borrow, so resetting it would
+ *   cost two round trips per call for nothing. Each handle starts in
+ *   auto-commit mode as JDBC requires, and the physical connection is only
+ *   switched back if a borrower creates a statement without turning it off.
+ */
+public class ConnectionPool implements AutoCloseable {
+	private static final int VALIDATION_TIMEOUT_SECONDS = 2;
+	private static final long HOUSEKEEPING_PERIOD_MILLIS = 30_000;
+
+	private final String url;
+	private final int minSize;
+	private final int maxSize;
+	private final long acquireTimeoutMillis;
+	private final long idleTimeoutMillis;
+	private final long validationIntervalMillis;
+	private final long leakThresholdMillis;
+	private final long slowQueryNanos;
+
+	private final Semaphore permits;
+	private final LinkedBlockingDeque<PooledConnection> idle = new LinkedBlockingDeque<>();
+	private final Set<PooledConnection> borrowed = ConcurrentHashMap.newKeySet();
+	private final ScheduledExecutorService housekeeper;
+
+	private final AtomicLong created = new AtomicLong();
+	private final AtomicLong destroyed = new AtomicLong();
+	private final AtomicLong borrows = new AtomicLong();
+	private final AtomicLong acquireTimeouts = new AtomicLong();
+	private final AtomicLong validationFailures = new AtomicLong();
+	private final AtomicLong leaksDetected = new AtomicLong();
+	private final AtomicLong totalAcquireNanos = new AtomicLong();
+
+	private volatile boolean closed;
+
+	public ConnectionPool(String url, int minSize, int maxSize, long acquireTimeoutMillis, long idleTimeoutMillis,
+			long validationIntervalMillis, long leakThresholdMillis, long slowQueryMillis) {
+		if (minSize < 0 || maxSize < 1 || minSize > maxSize) {
+			throw new IllegalArgumentException("Invalid pool size: min=" + minSize + ", max=" + maxSize);
+		}
+
+		this.url = url;
+		this.minSize = minSize;
+		this.maxSize = maxSize;
+		this.acquireTimeoutMillis = acquireTimeoutMillis;
+		this.idleTimeoutMillis = idleTimeoutMillis;
+		this.validationIntervalMillis = validationIntervalMillis;
+		this.leakThresholdMillis = leakThresholdMillis;
+		this.slowQueryNanos = TimeUnit.MILLISECONDS.toNanos(slowQueryMillis);
+		this.permits = new Semaphore(maxSize, true);
+
+		this.housekeeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "recipes-pool-housekeeper");
+			thread.setDaemon(true);
+			return thread;
+		});
+		housekeeper.scheduleWithFixedDelay(this::housekeep, HOUSEKEEPING_PERIOD_MILLIS, HOUSEKEEPING_PERIOD_MILLIS,
+				TimeUnit.MILLISECONDS);
+	}
+
+	/*
+	 * Borrow a connection from the pool. The returned connection must be closed by
+	 * the caller, which returns it to the pool.
+	 */
+	public Connection getConnection() {
+		Optional<Connection> conn = borrow(acquireTimeoutMillis);
+
+		if (conn.isEmpty()) {
+			acquireTimeouts.incrementAndGet();
+			throw new DbException("Timed out after " + acquireTimeoutMillis
+					+ "ms waiting for a database connection. " + getStats());
+		}
+		return conn.get();
+	}
+
+	/*
+	 * Borrow a connection only if one can be had within timeoutMillis (0 means
+	 * only if one is free right now). Used for optional extra connections, where
+	 * waiting could deadlock callers that already hold one.
+	 */
+	public Optional<Connection> tryGetConnection(long timeoutMillis) {
+		return borrow(timeoutMillis);
+	}
+
+	private Optional<Connection> borrow(long timeoutMillis) {
+		if (closed) {
+			throw new DbException("Connection pool has been closed.");
+		}
+
+		long start = System.nanoTime();
+
+		try {
+			if (!permits.tryAcquire(timeoutMillis, TimeUnit.MILLISECONDS)) {
+				Metrics.registry().recordTime("db.connection.acquire", System.nanoTime() - start);
+				return Optional.empty();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new DbException("Interrupted while waiting for a database connection.", e);
+		}
+
+		try {
+			PooledConnection pooled = takeIdleOrCreate();
+
+			pooled.borrowedAt = System.currentTimeMillis();
+			pooled.borrowSite = leakThresholdMillis > 0 ? new Throwable("Connection borrowed here") : null;
+			pooled.leakReported = false;
+			borrowed.add(pooled);
+
+			long acquireNanos = System.nanoTime() - start;
+
+			borrows.incrementAndGet();
+			totalAcquireNanos.addAndGet(acquireNanos);
+			Metrics.registry().recordTime("db.connection.acquire", acquireNanos);
+
+			return Optional.of((Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+					new Class<?>[] { Connection.class }, new BorrowedConnection(pooled)));
+		} catch (RuntimeException e) {
+			permits.release();
+			throw e;
+		}
+	}
+
+	private PooledConnection takeIdleOrCreate() {
+		PooledConnection pooled;
+
+		while ((pooled = idle.pollFirst()) != null) {
+			if (isUsable(pooled)) {
+				return pooled;
+			}
+			validationFailures.incrementAndGet();
+			destroy(pooled);
+		}
+
+		return create();
+	}
+
+	private boolean isUsable(PooledConnection pooled) {
+		if (System.currentTimeMillis() - pooled.lastReturnedAt < validationIntervalMillis) {
+			return true;
+		}
+
+		try {
+			return pooled.physical.isValid(VALIDATION_TIMEOUT_SECONDS);
+		} catch (SQLException e) {
+			return false;
+		}
+	}
+
+	private PooledConnection create() {
+		try {
+			// DriverManager is the JDBC class that manages drivers and connections
+			Connection conn = DriverManager.getConnection(url);
+			created.incrementAndGet();
+			return new PooledConnection(conn);
+		} catch (SQLException e) {
+			System.out.println("\nError getting connection.");
+			throw new DbException(e);
+		}
+	}
+
+	private void destroy(PooledConnection pooled) {
+		try {
+			pooled.physical.close();
+		} catch (SQLException e) {
+			// The connection is being discarded anyway.
+		}
+		destroyed.incrementAndGet();
+	}
+
+	/*
+	 * Called when the borrower closes the proxy. Any transaction left open is
+	 * rolled back so the next borrower gets a clean connection. With
+	 * useLocalTransactionState on the URL the driver knows whether a transaction
+	 * is open, so after a commit this rollback sends nothing.
+	 */
+	private void release(PooledConnection pooled) {
+		borrowed.remove(pooled);
+
+		try {
+			boolean reusable = !closed && !pooled.broken && !pooled.physical.isClosed();
+
+			if (reusable) {
+				try {
+					if (!pooled.autoCommit) {
+						pooled.physical.rollback();
+					}
+				} catch (SQLException e) {
+					reusable = false;
+				}
+			}
+
+			if (reusable) {
+				pooled.lastReturnedAt = System.currentTimeMillis();
+				idle.offerFirst(pooled);
+			} else {
+				destroy(pooled);
+			}
+		} catch (SQLException e) {
+			destroy(pooled);
+		} finally {
+			permits.release();
+		}
+	}
+
+	private void housekeep() {
+		try {
+			long now = System.currentTimeMillis();
+
+			// Evict from the cold end of the deque, keeping at least minSize connections.
+			Iterator<PooledConnection> coldest = idle.descendingIterator();
+
+			while (coldest.hasNext() && idle.size() > minSize) {
+				PooledConnection pooled = coldest.next();
+
+				if (now - pooled.lastReturnedAt > idleTimeoutMillis && idle.remove(pooled)) {
+					destroy(pooled);
+				}
+			}
+
+			while (!closed && idle.size() + borrowed.size() < minSize) {
+				PooledConnection pooled = create();
+				pooled.lastReturnedAt = System.currentTimeMillis();
+				idle.offerLast(pooled);
+			}
+
+			if (leakThresholdMillis > 0) {
+				for (PooledConnection pooled : borrowed) {
+					if (!pooled.leakReported && now - pooled.borrowedAt > leakThresholdMillis) {
+						pooled.leakReported = true;
+						leaksDetected.incrementAndGet();
+						System.out.println("\nPossible connection leak: connection held for "
+								+ (now - pooled.borrowedAt) + "ms.");
+						if (Objects.nonNull(pooled.borrowSite)) {
+							pooled.borrowSite.printStackTrace(System.out);
+						}
+					}
+				}
+			}
+		} catch (RuntimeException e) {
+			// Never let the housekeeper die; try again on the next run.
+			System.out.println("\nConnection pool housekeeping failed: " + e);
+		}
+	}
+
+	// The number of connections currently borrowed; cheaper than getStats()
+	public int getActiveCount() {
+		return borrowed.size();
+	}
+
+	public PoolStats getStats() {
+		int idleCount = idle.size();
+		int activeCount = borrowed.size();
+
+		// @formatter:off
+		return new PoolStats(
+			minSize,
+			maxSize,
+			idleCount,
+			activeCount,
+			permits.getQueueLength(),
+			created.get(),
+			destroyed.get(),
+			borrows.get(),
+			acquireTimeouts.get(),
+			validationFailures.get(),
+			leaksDetected.get(),
+			totalAcquireNanos.get());
+		// @formatter:on
+	}
+
+	@Override
+	public void close() {
+		closed = true;
+		housekeeper.shutdownNow();
+
+		PooledConnection pooled;
+
+		while ((pooled = idle.pollFirst()) != null) {
+			destroy(pooled);
+		}
+	}
+
+	/*
+	 * Holds a physical connection plus its bookkeeping.
+	 */
+	private static class PooledConnection {
+		private final Connection physical;
+		private volatile long borrowedAt;
+		private volatile long lastReturnedAt;
+		private volatile Throwable borrowSite;
+		private volatile boolean leakReported;
+		private volatile boolean broken;
+
+		// the physical connection's auto-commit mode, which may differ from the borrower's
+		private volatile boolean autoCommit = true;
+
+		PooledConnection(Connection physical) {
+			this.physical = physical;
+		}
+	}
+
+	/*
+	 * A new handle is created for every borrow. It forwards everything to the
+	 * physical connection except close() and isClosed(), so a caller holding on to
+	 * a stale handle can never use a connection that has been lent to someone
+	 * else. Statements are wrapped so their executions are timed, and the time
+	 * from setAutoCommit(false) to commit() or rollback() is recorded.
+	 *
+	 * Calls are serialized with a ReentrantLock rather than synchronized, since
+	 * most of them wait on the network and a virtual thread blocked inside a
+	 * synchronized method pins its carrier thread. Connector/J 8.0.31 still
+	 * synchronizes internally, so the driver itself pins until it is upgraded
+	 * to a release that uses locks as well.
+	 */
+	private class BorrowedConnection implements InvocationHandler {
+		private final ReentrantLock lock = new ReentrantLock();
+		private final PooledConnection pooled;
+		private boolean returned;
+		private boolean autoCommit = true;
+		private long transactionStart;
+
+		BorrowedConnection(PooledConnection pooled) {
+			this.pooled = pooled;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			lock.lock();
+
+			try {
+				return invokeLocked(proxy, method, args);
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		private Object invokeLocked(Object proxy, Method method, Object[] args) throws Throwable {
+			switch (method.getName()) {
+			case "close":
+				if (!returned) {
+					returned = true;
+					release(pooled);
+				}
+				return null;
+
+			case "isClosed":
+				return returned || pooled.physical.isClosed();
+
+			case "equals":
+				return proxy == args[0];
+
+			case "hashCode":
+				return System.identityHashCode(proxy);
+
+			case "toString":
+				return "Pooled" + pooled.physical;
+
+			default:
+				break;
+			}
+
+			if (returned) {
+				throw new SQLException("Connection has already been returned to the pool.");
+			}
+
+			try {
+				switch (method.getName()) {
+				case "getAutoCommit":
+					return autoCommit;
+
+				case "setAutoCommit":
+					autoCommit = (Boolean) args[0];
+					transactionStart = autoCommit ? 0 : System.nanoTime();
+
+					if (autoCommit != pooled.autoCommit) {
+						method.invoke(pooled.physical, args);
+						pooled.autoCommit = autoCommit;
+					}
+					return null;
+
+				case "createStatement":
+				case "prepareStatement":
+				case "prepareCall":
+					// The previous borrower left auto-commit off; this one expects it on
+					if (autoCommit && !pooled.autoCommit) {
+						pooled.physical.setAutoCommit(true);
+						pooled.autoCommit = true;
+					}
+					break;
+
+				default:
+					break;
+				}
+
+				Object result = method.invoke(pooled.physical, args);
+
+				switch (method.getName()) {
+				case "createStatement":
+				case "prepareStatement":
+				case "prepareCall":
+					return TimedStatement.wrap((Statement) result, (Connection) proxy, method.getName(), args,
+							slowQueryNanos);
+
+				case "commit":
+					endTransaction("db.transaction.commit");
+					break;
+
+				case "rollback":
+					if (Objects.isNull(args)) {
+						endTransaction("db.transaction.rollback");
+					}
+					break;
+
+				default:
+					break;
+				}
+				return result;
+			} catch (InvocationTargetException e) {
+				Throwable cause = e.getCause();
+
+				if (cause instanceof SQLException) {
+					markIfBroken((SQLException) cause);
+				}
+				throw cause;
+			} catch (SQLException e) {
+				markIfBroken(e);
+				throw e;
+			}
+		}
+
+		// SQL state class 08 is "connection exception": don't hand this one out again.
+		private void markIfBroken(SQLException e) {
+			String state = e.getSQLState();
+
+			if (Objects.nonNull(state) && state.startsWith("08")) {
+				pooled.broken = true;
+			}
+		}
+
+		// A new transaction starts right away, since auto-commit is still off
+		private void endTransaction(String name) {
+			if (transactionStart != 0) {
+				long now = System.nanoTime();
+
+				Metrics.registry().recordTime(name, now - transactionStart);
+				transactionStart = now;
+			}
+		}
+	}
+
+} // end CLASS
@@ -0,0 +1,37 @@
+package recipes.dao;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/*
+ * JFR event for one RecipeDao operation, from borrowing the connection to
+ * returning the result. The connection, statement, mapping and transaction
+ * events recorded on the same thread during the operation show where its time
+ * went.
+ */
+@Name("recipes.DaoOperation")
+@Label("DAO Operation")
+@Description("One RecipeDao call, including its connection, statements and row mapping")
+@Category({ "Recipes", "Database" })
+class DaoOperationEvent extends Event {
+	@Label("Operation")
+	String operation;
+
+	@Label("Table")
+	@Description("The main table the operation reads or writes")
+	String table;
+
+	@Label("Recipe ID")
+	@Description("The recipe the operation works on, 0 if it isn't about one recipe")
+	int recipeId;
+
+	@Label("Row Count")
+	long rowCount;
+
+	@Label("Failed")
+	boolean failed;
+
+} // end CLASS
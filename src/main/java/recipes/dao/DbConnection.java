@@ -1,10 +1,7 @@
 package recipes.dao;
 
 import java.sql.Connection;
-import java.sql.DriverManager;
-import java.sql.SQLException;
-
-import recipes.exception.DbException;
+import java.util.Optional;
 
 public class DbConnection {
 	private static final String SCHEMA = "recipes";
@@ -12,25 +9,109 @@ public class DbConnection {
 	private static final String PASSWORD = "recipes";
 	private static final String HOST = "localhost";
 	private static final int PORT = 3306;
-	
-	// connection method
+
+	// connection pool settings
+	private static final int MIN_POOL_SIZE = 2;
+	private static final int MAX_POOL_SIZE = 10;
+	private static final long ACQUIRE_TIMEOUT_MILLIS = 10_000;
+	private static final long IDLE_TIMEOUT_MILLIS = 600_000;
+	private static final long VALIDATION_INTERVAL_MILLIS = 500;
+
+	// Leak detection records the borrower's stack on every borrow, so it is off
+	// unless debugging; turn it on with -Drecipes.db.leakThresholdMillis=...
+	private static final long LEAK_THRESHOLD_MILLIS = Long.getLong("recipes.db.leakThresholdMillis", 0);
+
+	// statements slower than this are logged; override with -Drecipes.db.slowQueryMillis=...
+	private static final long SLOW_QUERY_MILLIS = Long.getLong("recipes.db.slowQueryMillis", 500);
+
+	// prepared statements cached per connection, and the longest SQL text that is cached
+	private static final int PREP_STMT_CACHE_SIZE = 250;
+	private static final int PREP_STMT_CACHE_SQL_LIMIT = 4_096;
+
+	// The pool is created the first time a connection is requested
+	private static class PoolHolder {
+		// This is the JDBC connection string. allowMultiQueries lets RecipeDao load a
+		// whole recipe with one statement; rewriteBatchedStatements turns batched
+		// INSERTs into multi-row INSERTs. useServerPrepStmts prepares statements on the
+		// server and cachePrepStmts keeps them per connection, keyed by SQL text, so a
+		// repeated query skips the parse; multi-statement SQL falls back to client-side
+		// prepares. useLocalSessionState and useLocalTransactionState let the driver
+		// skip setAutoCommit and rollback calls that wouldn't change anything, which
+		// the pool relies on when connections are returned. It can be replaced with
+		// -Drecipes.db.url=... (the benchmarks use this to point at a scratch database).
+		//
+		// allowMultiQueries applies to every connection, not just the recipe graph and
+		// summary loads that need it. That is safe only while no SQL text comes from
+		// outside: RecipeDao builds its SQL from constants and ? placeholders, binding
+		// every value, and Statement.execute(String) only runs the scripts and
+		// migrations on the classpath. Keep it that way; never concatenate a value into
+		// SQL, or an injected "; DROP ..." would run as a second statement. A separate
+		// multi-statement pool would avoid this at the cost of twice the connections.
+		private static final String URL = System.getProperty("recipes.db.url", String.format(
+				"jdbc:mysql://%s:%d/%s?user=%s&password=%s&useSSL=false&allowMultiQueries=true"
+						+ "&rewriteBatchedStatements=true&useServerPrepStmts=true&cachePrepStmts=true"
+						+ "&prepStmtCacheSize=%d&prepStmtCacheSqlLimit=%d"
+						+ "&useLocalSessionState=true&useLocalTransactionState=true",
+				HOST, PORT, SCHEMA, USER, PASSWORD, PREP_STMT_CACHE_SIZE, PREP_STMT_CACHE_SQL_LIMIT));
+
+		// @formatter:off
+		private static final ConnectionPool POOL = new ConnectionPool(
+			URL,
+			MIN_POOL_SIZE,
+			MAX_POOL_SIZE,
+			ACQUIRE_TIMEOUT_MILLIS,
+			IDLE_TIMEOUT_MILLIS,
+			VALIDATION_INTERVAL_MILLIS,
+			LEAK_THRESHOLD_MILLIS,
+			SLOW_QUERY_MILLIS);
+		// @formatter:on
+	}
+
+	/*
+	 * Borrows a connection from the pool. Closing the connection returns it to the
+	 * pool, so callers keep using try-with-resources.
+	 */
 	public static Connection getConnection() {
-		// This is the JDBC connection string
-		String url = String.format("jdbc:mysql://%s:%d/%s?user=%s&password=%s&useSSL=false", HOST, PORT, SCHEMA, USER, PASSWORD);
-		
-		// Used only for troubleshooting and testing
-		//System.out.println("Connecting with url = " + url);
-		
-		try {
-			// DriverManager is the JDBC class that manages drivers and connections
-			Connection conn = DriverManager.getConnection(url);
-			System.out.println("\nSuccessfully obtained connection!");
-			return conn;
-		} catch (SQLException e) {
-			System.out.println("\nError getting connection.");
-			throw new DbException(e);
+		ConnectionAcquireEvent event = new ConnectionAcquireEvent();
+
+		event.begin();
+		Connection conn = PoolHolder.POOL.getConnection();
+		commitAcquireEvent(event, true);
+
+		return conn;
+	}
+
+	// Borrows a connection only if one is free right now
+	public static Optional<Connection> tryGetConnection() {
+		ConnectionAcquireEvent event = new ConnectionAcquireEvent();
+
+		event.begin();
+		Optional<Connection> conn = PoolHolder.POOL.tryGetConnection(0);
+		commitAcquireEvent(event, conn.isPresent());
+
+		return conn;
+	}
+
+	private static void commitAcquireEvent(ConnectionAcquireEvent event, boolean acquired) {
+		if (event.shouldCommit()) {
+			event.acquired = acquired;
+			event.activeConnections = PoolHolder.POOL.getActiveCount();
+			event.commit();
 		}
-		
+	}
+
+	// The most connections that can be borrowed at once; doesn't create the pool
+	public static int getMaxPoolSize() {
+		return MAX_POOL_SIZE;
+	}
+
+	public static PoolStats getPoolStats() {
+		return PoolHolder.POOL.getStats();
+	}
+
+	// Closes all idle connections. Called when the application exits.
+	public static void shutdown() {
+		PoolHolder.POOL.close();
 	}
 
 } // end CLASS
@@ -0,0 +1,101 @@
+package recipes.dao;
+
+/*
+ * An immutable snapshot of the connection pool counters. Obtain one from
+ * DbConnection.getPoolStats().
+ */
+public class PoolStats {
+	private final int minSize;
+	private final int maxSize;
+	private final int idle;
+	private final int active;
+	private final int waiting;
+	private final long created;
+	private final long destroyed;
+	private final long borrows;
+	private final long acquireTimeouts;
+	private final long validationFailures;
+	private final long leaksDetected;
+	private final long totalAcquireNanos;
+
+	PoolStats(int minSize, int maxSize, int idle, int active, int waiting, long created, long destroyed, long borrows,
+			long acquireTimeouts, long validationFailures, long leaksDetected, long totalAcquireNanos) {
+		this.minSize = minSize;
+		this.maxSize = maxSize;
+		this.idle = idle;
+		this.active = active;
+		this.waiting = waiting;
+		this.created = created;
+		this.destroyed = destroyed;
+		this.borrows = borrows;
+		this.acquireTimeouts = acquireTimeouts;
+		this.validationFailures = validationFailures;
+		this.leaksDetected = leaksDetected;
+		this.totalAcquireNanos = totalAcquireNanos;
+	}
+
+	// getters
+	public int getMinSize() {
+		return minSize;
+	}
+
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	public int getIdle() {
+		return idle;
+	}
+
+	public int getActive() {
+		return active;
+	}
+
+	public int getWaiting() {
+		return waiting;
+	}
+
+	public long getCreated() {
+		return created;
+	}
+
+	public long getDestroyed() {
+		return destroyed;
+	}
+
+	public long getBorrows() {
+		return borrows;
+	}
+
+	public long getAcquireTimeouts() {
+		return acquireTimeouts;
+	}
+
+	public long getValidationFailures() {
+		return validationFailures;
+	}
+
+	public long getLeaksDetected() {
+		return leaksDetected;
+	}
+
+	public long getTotalAcquireNanos() {
+		return totalAcquireNanos;
+	}
+
+	// average time spent waiting for a connection, in microseconds
+	public double getAverageAcquireMicros() {
+		return borrows == 0 ? 0.0 : totalAcquireNanos / 1000.0 / borrows;
+	}
+
+	// toString()
+	@Override
+	public String toString() {
+		return "PoolStats [min=" + minSize + ", max=" + maxSize + ", idle=" + idle + ", active=" + active
+				+ ", waiting=" + waiting + ", created=" + created + ", destroyed=" + destroyed + ", borrows=" + borrows
+				+ ", acquireTimeouts=" + acquireTimeouts + ", validationFailures=" + validationFailures
+				+ ", leaksDetected=" + leaksDetected + ", avgAcquireMicros="
+				+ String.format("%.1f", getAverageAcquireMicros()) + "]";
+	}
+
+} // end CLASS
@@ -7,15 +7,39 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import provided.util.DaoBase;
+import provided.util.RowMapper;
 import recipes.entity.Category;
 import recipes.entity.Ingredient;
 import recipes.entity.Recipe;
+import recipes.entity.RecipeSearchHit;
+import recipes.entity.RecipeSummaries;
 import recipes.entity.Step;
 import recipes.entity.Unit;
 import recipes.exception.DbException;
@@ -23,38 +47,1029 @@ import recipes.exception.DbException;
 public class RecipeDao extends DaoBase {
 
 	// constants
-	private static final String CATEGORY_TABLE = "category";
-	private static final String INGREDIENT_TABLE = "ingredient";
-	private static final String RECIPE_TABLE = "recipe";
-	private static final String RECIPE_CATEGORY_TABLE = "recipe_category";
-	private static final String STEP_TABLE = "step";
-	private static final String UNIT_TABLE = "unit";
+	static final String CATEGORY_TABLE = "category";
+	static final String INGREDIENT_TABLE = "ingredient";
+	static final String RECIPE_TABLE = "recipe";
+	static final String RECIPE_CATEGORY_TABLE = "recipe_category";
+	static final String STEP_TABLE = "step";
+	static final String UNIT_TABLE = "unit";
+	static final String MIGRATION_TABLE = "schema_migration";
+
+	// schema migrations: named lock held while migrating and the chunked data migration directive
+	private static final String MIGRATION_LOCK = "recipes.schema_migration";
+	private static final int MIGRATION_LOCK_TIMEOUT_SECONDS = 60;
+	private static final Pattern CHUNK_DIRECTIVE = Pattern.compile("CHUNK BY (\\w+)\\.(\\w+) SIZE (\\d+)",
+			Pattern.CASE_INSENSITIVE);
+
+	// recipe columns for list views; everything but the notes TEXT column
+	private static final String RECIPE_LIST_COLUMNS = "recipe_id, recipe_name, num_servings, prep_time, cook_time, created_at";
+
+	// maximum number of recipe IDs bound into a single IN (...) list
+	private static final int IN_CHUNK_SIZE = 500;
+
+	// @formatter:off
+	private static final String RECIPE_BY_ID_SQL = ""
+		+ "SELECT * FROM " + RECIPE_TABLE + " WHERE recipe_id = ?";
+
+	private static final String RECIPE_BY_ID_FOR_SHARE_SQL = RECIPE_BY_ID_SQL + " FOR SHARE";
+
+	private static final String RECIPE_INGREDIENTS_SQL = ""
+		+ "SELECT i.*, u.unit_name_singular, u.unit_name_plural "
+		+ "FROM " + INGREDIENT_TABLE + " i "
+		+ "LEFT JOIN " + UNIT_TABLE + " u USING (unit_id) "
+		+ "WHERE  recipe_id = ? "
+		+ "ORDER BY i.ingredient_order";
+
+	private static final String RECIPE_STEPS_SQL = ""
+		+ "SELECT * FROM " + STEP_TABLE + " s "
+		+ "WHERE s.recipe_id = ? "
+		+ "ORDER BY s.step_order";
+
+	private static final String RECIPE_CATEGORIES_SQL = ""
+		+ "SELECT c.* "
+		+ "FROM " + RECIPE_CATEGORY_TABLE + " rc "
+		+ "JOIN " + CATEGORY_TABLE + " c USING (category_id) "
+		+ "WHERE recipe_id = ? "
+		+ "ORDER BY c.category_name";
+
+	/*
+	 * The whole recipe graph in one statement. The connection URL enables
+	 * allowMultiQueries, so the driver sends all four queries in a single round
+	 * trip and the server returns four result sets, read in this order.
+	 */
+	private static final String RECIPE_GRAPH_SQL = ""
+		+ RECIPE_BY_ID_SQL + "; "
+		+ RECIPE_INGREDIENTS_SQL + "; "
+		+ RECIPE_STEPS_SQL + "; "
+		+ RECIPE_CATEGORIES_SQL;
+
+	private static final String LOCK_RECIPE_SQL = ""
+		+ "SELECT recipe_id FROM " + RECIPE_TABLE + " WHERE recipe_id = ? FOR UPDATE";
+
+	// The step row itself isn't locked, so this takes the same lock, in the same order, as LOCK_RECIPE_SQL
+	private static final String LOCK_STEP_RECIPE_SQL = ""
+		+ "SELECT recipe_id FROM " + RECIPE_TABLE + " "
+		+ "WHERE recipe_id = (SELECT recipe_id FROM " + STEP_TABLE + " WHERE step_id = ?) FOR UPDATE";
+	// @formatter:on
 
 	public Optional<Recipe> fetchRecipeById(Integer recipeId) {
-		String sql = "SELECT * FROM " + RECIPE_TABLE + " WHERE recipe_id = ?";
+		return fetchRecipeGraph(recipeId);
+	}
 
+	/*
+	 * The single round trip body of fetchRecipeById(Integer). The parallel
+	 * version falls back to this directly, so a subclass that decorates the
+	 * public methods sees the fallback as one call, not two.
+	 */
+	private Optional<Recipe> fetchRecipeGraph(Integer recipeId) {
 		try (Connection conn = DbConnection.getConnection()) {
 			startTransaction(conn);
 
-			try {
+			try (PreparedStatement stmt = conn.prepareStatement(RECIPE_GRAPH_SQL)) {
+				for (int index = 1; index <= 4; index++) {
+					setParameter(stmt, index, recipeId, Integer.class);
+				}
+
 				Recipe recipe = null;
+				boolean hasResults = stmt.execute();
+
+				// recipe row
+				if (hasResults) {
+					try (ResultSet rs = stmt.getResultSet()) {
+						if (rs.next()) {
+							recipe = extract(rs, Recipe.class);
+						}
+					}
+				}
+
+				// The child result sets are always returned; they're only read if the recipe exists.
+				if (Objects.nonNull(recipe) && stmt.getMoreResults()) {
+					try (ResultSet rs = stmt.getResultSet()) {
+						recipe.getIngredients().addAll(extractIngredients(rs));
+					}
+				}
+				if (Objects.nonNull(recipe) && stmt.getMoreResults()) {
+					try (ResultSet rs = stmt.getResultSet()) {
+						recipe.getSteps().addAll(extractSteps(rs));
+					}
+				}
+				if (Objects.nonNull(recipe) && stmt.getMoreResults()) {
+					try (ResultSet rs = stmt.getResultSet()) {
+						recipe.getCategories().addAll(extractCategories(rs));
+					}
+				}
+
+				commitTransaction(conn);
+				return Optional.ofNullable(recipe);
+			} catch (Exception e) {
+				rollbackTransaction(conn);
+				throw new DbException(e);
+			}
+		} catch (SQLException e) {
+			throw new DbException(e);
+		}
+
+	}
+
+	/*
+	 * Loads a recipe like fetchRecipeById(Integer), but runs the ingredient and
+	 * step queries on two more pooled connections on the executor while the
+	 * calling thread reads the categories, so the load takes about as long as
+	 * the recipe row plus the slowest child query.
+	 *
+	 * MySQL can't share one snapshot between connections, so the three snapshots
+	 * are made to agree with a lock instead. The recipe row is read FOR SHARE
+	 * first, and every write to a recipe's children holds the row's exclusive
+	 * lock (see lockRecipe), so no child write for this recipe can commit until
+	 * this load commits. The child queries only start once the shared lock is
+	 * granted, and they are plain consistent reads that never wait on a lock, so
+	 * the result is the recipe as of one point in time.
+	 *
+	 * The extra connections are only borrowed if they are free right away. When
+	 * the pool is busy this falls back to the single round trip version instead
+	 * of waiting, since callers holding one connection while waiting for more
+	 * could deadlock the pool.
+	 */
+	public Optional<Recipe> fetchRecipeById(Integer recipeId, Executor executor) {
+		List<Connection> connections = new ArrayList<>(3);
+
+		try {
+			connections.add(DbConnection.getConnection());
+			DbConnection.tryGetConnection().ifPresent(connections::add);
+			DbConnection.tryGetConnection().ifPresent(connections::add);
+
+			if (connections.size() < 3) {
+				closeAll(connections);
+				return fetchRecipeGraph(recipeId);
+			}
+
+			try {
+				for (Connection conn : connections) {
+					startTransaction(conn);
+				}
+
+				Recipe recipe = queryChildren(connections.get(0), RECIPE_BY_ID_FOR_SHARE_SQL, recipeId,
+						rs -> rs.next() ? extract(rs, Recipe.class) : null);
+
+				if (Objects.nonNull(recipe)) {
+					Connection ingredientConn = connections.get(1);
+					Connection stepConn = connections.get(2);
+					CompletableFuture<List<Ingredient>> ingredients = null;
+					CompletableFuture<List<Step>> steps = null;
+					List<Category> categories;
+
+					try {
+						ingredients = CompletableFuture.supplyAsync(() -> queryChildren(ingredientConn,
+								RECIPE_INGREDIENTS_SQL, recipeId, this::extractIngredients), executor);
+						steps = CompletableFuture.supplyAsync(() -> queryChildren(stepConn, RECIPE_STEPS_SQL,
+								recipeId, this::extractSteps), executor);
+
+						categories = queryChildren(connections.get(0), RECIPE_CATEGORIES_SQL, recipeId,
+								this::extractCategories);
+					} finally {
+						// The connections can't be returned while the other queries are still using them
+						for (CompletableFuture<?> running : Arrays.asList(ingredients, steps)) {
+							if (Objects.nonNull(running)) {
+								running.exceptionally(e -> null).join();
+							}
+						}
+					}
+
+					recipe.getIngredients().addAll(ingredients.join());
+					recipe.getSteps().addAll(steps.join());
+					recipe.getCategories().addAll(categories);
+				}
+
+				for (Connection conn : connections) {
+					commitTransaction(conn);
+				}
+				return Optional.ofNullable(recipe);
+			} catch (Exception e) {
+				for (Connection conn : connections) {
+					rollbackTransaction(conn);
+				}
+				throw new DbException(e instanceof CompletionException ? e.getCause() : e);
+			}
+		} catch (SQLException e) {
+			throw new DbException(e);
+		} finally {
+			closeAll(connections);
+		}
+	} // end fetchRecipeById
+
+	private <T> T queryChildren(Connection conn, String sql, Integer recipeId, ResultSetReader<T> reader) {
+		try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+			setParameter(stmt, 1, recipeId, Integer.class);
+
+			try (ResultSet rs = stmt.executeQuery()) {
+				return reader.read(rs);
+			}
+		} catch (SQLException e) {
+			throw new DbException(e);
+		}
+	}
+
+	private void closeAll(List<Connection> connections) {
+		for (Connection conn : connections) {
+			try {
+				conn.close();
+			} catch (SQLException e) {
+				// A pooled connection is only returned to the pool here
+			}
+		}
+		connections.clear();
+	}
+
+	// Reads a result set; lets lambdas that read result sets throw SQLException
+	@FunctionalInterface
+	private interface ResultSetReader<T> {
+		T read(ResultSet rs) throws SQLException;
+	}
+
+	/*
+	 * Fixed red squigglies while typing by letting Java add "throws SQLException to
+	 * method name. The exception is already defined in the fetchRecipeById method,
+	 * which calls this method.
+	 */
+	private List<Step> fetchRecipeSteps(Connection conn, Integer recipeId) throws SQLException {
+		try (PreparedStatement stmt = conn.prepareStatement(RECIPE_STEPS_SQL)) {
+			setParameter(stmt, 1, recipeId, Integer.class);
+
+			try (ResultSet rs = stmt.executeQuery()) {
+				return extractSteps(rs);
+			}
+		}
+	}
+
+	private List<Category> extractCategories(ResultSet rs) throws SQLException {
+		List<Category> categories = new LinkedList<Category>();
+		RowMapper<Category> mapper = rowMapper(rs, Category.class);
+
+		while (rs.next()) {
+			categories.add(mapper.map(rs));
+		}
+		return categories;
+	}
+
+	private List<Step> extractSteps(ResultSet rs) throws SQLException {
+		List<Step> steps = new LinkedList<Step>();
+		RowMapper<Step> mapper = rowMapper(rs, Step.class);
+
+		while (rs.next()) {
+			steps.add(mapper.map(rs));
+		}
+		return steps;
+	}
+
+	private List<Ingredient> extractIngredients(ResultSet rs) throws SQLException {
+		List<Ingredient> ingredients = new LinkedList<Ingredient>();
+		RowMapper<Ingredient> ingredientMapper = rowMapper(rs, Ingredient.class);
+		RowMapper<Unit> unitMapper = rowMapper(rs, Unit.class);
+
+		while (rs.next()) {
+			Ingredient ingredient = ingredientMapper.map(rs);
+			Unit unit = unitMapper.map(rs);
+
+			ingredient.setUnit(unit);
+			ingredients.add(ingredient);
+		}
+		return ingredients;
+	}
+
+	/*
+	 * Loads complete recipes for many IDs without N+1 queries. The IDs are split
+	 * into chunks of IN_CHUNK_SIZE; each chunk costs one recipe query plus one
+	 * query per child table, and the children are stitched onto their recipes by
+	 * recipe_id. Recipes are returned in the order their IDs were given. IDs that
+	 * don't exist are skipped.
+	 */
+	public List<Recipe> fetchRecipesByIds(Collection<Integer> recipeIds) {
+		List<Integer> ids = new ArrayList<>(new LinkedHashSet<>(recipeIds));
+		List<Recipe> recipes = new ArrayList<>(ids.size());
+
+		if (ids.isEmpty()) {
+			return recipes;
+		}
+
+		try (Connection conn = DbConnection.getConnection()) {
+			startTransaction(conn);
+
+			try {
+				for (int from = 0; from < ids.size(); from += IN_CHUNK_SIZE) {
+					List<Integer> chunk = ids.subList(from, Math.min(from + IN_CHUNK_SIZE, ids.size()));
+					Map<Integer, Recipe> byId = fetchRecipeChunk(conn, chunk);
+
+					for (Integer recipeId : chunk) {
+						Recipe recipe = byId.get(recipeId);
+
+						if (Objects.nonNull(recipe)) {
+							recipes.add(recipe);
+						}
+					}
+				}
+
+				commitTransaction(conn);
+				return recipes;
+			} catch (Exception e) {
+				rollbackTransaction(conn);
+				throw new DbException(e);
+			}
+		} catch (SQLException e) {
+			throw new DbException(e);
+		}
+	} // end fetchRecipesByIds
+
+	/*
+	 * Streams every recipe, with its ingredients, steps and categories, to the
+	 * consumer in recipe ID order. Recipes are read a page at a time using the last
+	 * recipe ID seen as the starting point of the next page, so only one page of
+	 * recipes is in memory at once. Everything is read in one transaction on one
+	 * connection.
+	 */
+	public void fetchAllRecipesWithChildren(Consumer<Recipe> consumer) {
+		String sql = "SELECT recipe_id FROM " + RECIPE_TABLE + " WHERE recipe_id > ? ORDER BY recipe_id LIMIT ?";
+
+		try (Connection conn = DbConnection.getConnection()) {
+			startTransaction(conn);
+
+			try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+				Integer lastRecipeId = 0;
+				List<Integer> page;
+
+				do {
+					page = new ArrayList<>(IN_CHUNK_SIZE);
+					setParameter(stmt, 1, lastRecipeId, Integer.class);
+					setParameter(stmt, 2, IN_CHUNK_SIZE, Integer.class);
+
+					try (ResultSet rs = stmt.executeQuery()) {
+						while (rs.next()) {
+							page.add(rs.getInt(1));
+						}
+					}
+
+					if (!page.isEmpty()) {
+						fetchRecipeChunk(conn, page).values().forEach(consumer);
+						lastRecipeId = page.get(page.size() - 1);
+					}
+				} while (page.size() == IN_CHUNK_SIZE);
+
+				commitTransaction(conn);
+			} catch (Exception e) {
+				rollbackTransaction(conn);
+				throw new DbException(e);
+			}
+		} catch (SQLException e) {
+			throw new DbException(e);
+		}
+	} // end fetchAllRecipesWithChildren
+
+	/*
+	 * Loads the recipes with the given IDs plus all of their children: four
+	 * queries regardless of the number of IDs. The map is ordered by recipe ID.
+	 */
+	private Map<Integer, Recipe> fetchRecipeChunk(Connection conn, List<Integer> recipeIds) throws SQLException {
+		String in = inClause(inClauseSize(recipeIds.size()));
+		Map<Integer, Recipe> recipes = new LinkedHashMap<>();
+
+		// @formatter:off
+		String recipeSql = ""
+			+ "SELECT * FROM " + RECIPE_TABLE + " "
+			+ "WHERE recipe_id IN " + in + " "
+			+ "ORDER BY recipe_id";
+
+		String ingredientSql = ""
+			+ "SELECT i.*, u.unit_name_singular, u.unit_name_plural "
+			+ "FROM " + INGREDIENT_TABLE + " i "
+			+ "LEFT JOIN " + UNIT_TABLE + " u USING (unit_id) "
+			+ "WHERE i.recipe_id IN " + in + " "
+			+ "ORDER BY i.recipe_id, i.ingredient_order";
+
+		String stepSql = ""
+			+ "SELECT * FROM " + STEP_TABLE + " s "
+			+ "WHERE s.recipe_id IN " + in + " "
+			+ "ORDER BY s.recipe_id, s.step_order";
+
+		String categorySql = ""
+			+ "SELECT rc.recipe_id, c.* "
+			+ "FROM " + RECIPE_CATEGORY_TABLE + " rc "
+			+ "JOIN " + CATEGORY_TABLE + " c USING (category_id) "
+			+ "WHERE rc.recipe_id IN " + in + " "
+			+ "ORDER BY rc.recipe_id, c.category_name";
+		// @formatter:on
+
+		try (PreparedStatement stmt = prepareWithIds(conn, recipeSql, recipeIds)) {
+			try (ResultSet rs = stmt.executeQuery()) {
+				RowMapper<Recipe> mapper = rowMapper(rs, Recipe.class);
+
+				while (rs.next()) {
+					Recipe recipe = mapper.map(rs);
+					recipes.put(recipe.getRecipeId(), recipe);
+				}
+			}
+		}
+
+		if (recipes.isEmpty()) {
+			return recipes;
+		}
+
+		try (PreparedStatement stmt = prepareWithIds(conn, ingredientSql, recipeIds)) {
+			try (ResultSet rs = stmt.executeQuery()) {
+				for (Ingredient ingredient : extractIngredients(rs)) {
+					recipes.get(ingredient.getRecipeId()).getIngredients().add(ingredient);
+				}
+			}
+		}
+
+		try (PreparedStatement stmt = prepareWithIds(conn, stepSql, recipeIds)) {
+			try (ResultSet rs = stmt.executeQuery()) {
+				for (Step step : extractSteps(rs)) {
+					recipes.get(step.getRecipeId()).getSteps().add(step);
+				}
+			}
+		}
+
+		try (PreparedStatement stmt = prepareWithIds(conn, categorySql, recipeIds)) {
+			try (ResultSet rs = stmt.executeQuery()) {
+				RowMapper<Category> mapper = rowMapper(rs, Category.class);
+
+				while (rs.next()) {
+					recipes.get(rs.getInt("recipe_id")).getCategories().add(mapper.map(rs));
+				}
+			}
+		}
+
+		return recipes;
+	}
+
+	// Binds the IDs, repeating the last one to fill the rest of a padded IN list
+	private PreparedStatement prepareWithIds(Connection conn, String sql, List<Integer> ids) throws SQLException {
+		PreparedStatement stmt = conn.prepareStatement(sql);
+
+		try {
+			int size = inClauseSize(ids.size());
+
+			for (int index = 0; index < size; index++) {
+				setParameter(stmt, index + 1, ids.get(Math.min(index, ids.size() - 1)), Integer.class);
+			}
+			return stmt;
+		} catch (SQLException e) {
+			stmt.close();
+			throw e;
+		}
+	}
+
+	/*
+	 * IN lists are padded to the next power of two (at most IN_CHUNK_SIZE), so any
+	 * number of IDs uses one of a few SQL texts and the driver's per-connection
+	 * statement cache can reuse the server-side prepared statements.
+	 */
+	private int inClauseSize(int count) {
+		if (count <= 1) {
+			return count;
+		}
+
+		int nextPowerOfTwo = Integer.highestOneBit(count - 1) << 1;
+		return Math.min(nextPowerOfTwo, Math.max(count, IN_CHUNK_SIZE));
+	}
+
+	// Builds "(?, ?, ?)" with one placeholder per value
+	private String inClause(int count) {
+		StringBuilder builder = new StringBuilder(count * 3 + 2).append('(');
+
+		for (int index = 0; index < count; index++) {
+			builder.append(index == 0 ? "?" : ", ?");
+		}
+		return builder.append(')').toString();
+	}
+
+	public List<Recipe> fetchAllRecipes() {
+		String sql = "SELECT * FROM " + RECIPE_TABLE + " ORDER BY recipe_name";
+
+		try (Connection conn = DbConnection.getConnection()) {
+			startTransaction(conn);
+
+			try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+				try (ResultSet rs = stmt.executeQuery()) {
+					List<Recipe> recipes = new LinkedList<>();
+					RowMapper<Recipe> mapper = rowMapper(rs, Recipe.class);
+
+					while (rs.next()) {
+						recipes.add(mapper.map(rs));
+					}
+					return recipes;
+				}
+			} catch (Exception e) {
+				rollbackTransaction(conn);
+				throw new DbException(e);
+			}
+		} catch (SQLException e) {
+			throw new DbException(e);
+		}
+	} // end fetchAllRecipes
+
+	/*
+	 * Returns up to limit recipes with IDs greater than afterRecipeId, in ID order.
+	 * Pass 0 for the first page and the last ID of a page for the next one. Paging
+	 * on the primary key means each page is an index range scan, however deep into
+	 * the table it is. The notes column is not loaded.
+	 */
+	public List<Recipe> fetchRecipePage(Integer afterRecipeId, int limit) {
+		// @formatter:off
+		String sql = ""
+			+ "SELECT " + RECIPE_LIST_COLUMNS + " FROM " + RECIPE_TABLE + " "
+			+ "WHERE recipe_id > ? "
+			+ "ORDER BY recipe_id "
+			+ "LIMIT ?";
+		// @formatter:on
+
+		try (Connection conn = DbConnection.getConnection()) {
+			startTransaction(conn);
+
+			try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+				setParameter(stmt, 1, afterRecipeId, Integer.class);
+				setParameter(stmt, 2, limit, Integer.class);
+
+				try (ResultSet rs = stmt.executeQuery()) {
+					List<Recipe> recipes = new ArrayList<>(limit);
+					RowMapper<Recipe> mapper = rowMapper(rs, Recipe.class);
+
+					while (rs.next()) {
+						recipes.add(mapper.map(rs));
+					}
+
+					commitTransaction(conn);
+					return recipes;
+				}
+			} catch (Exception e) {
+				rollbackTransaction(conn);
+				throw new DbException(e);
+			}
+		} catch (SQLException e) {
+			throw new DbException(e);
+		}
+	} // end fetchRecipePage
+
+	/*
+	 * Streams every recipe in ID order without the notes column. The result set is
+	 * forward-only and read-only with a fetch size of Integer.MIN_VALUE, which tells
+	 * MySQL to send rows one at a time instead of buffering the whole result in
+	 * memory. The stream holds a pooled connection until it is closed, so always
+	 * use it in a try-with-resources block.
+	 */
+	public Stream<Recipe> streamRecipes() {
+		String sql = "SELECT " + RECIPE_LIST_COLUMNS + " FROM " + RECIPE_TABLE + " ORDER BY recipe_id";
+
+		Connection conn = DbConnection.getConnection();
+
+		try {
+			PreparedStatement stmt = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY,
+					ResultSet.CONCUR_READ_ONLY);
+
+			try {
+				stmt.setFetchSize(Integer.MIN_VALUE);
+
+				ResultSet rs = stmt.executeQuery();
+				RowMapper<Recipe> mapper = rowMapper(rs, Recipe.class);
+
+				Spliterator<Recipe> rows = new Spliterators.AbstractSpliterator<>(Long.MAX_VALUE,
+						Spliterator.ORDERED | Spliterator.NONNULL) {
+					@Override
+					public boolean tryAdvance(Consumer<? super Recipe> action) {
+						try {
+							if (!rs.next()) {
+								return false;
+							}
+							action.accept(mapper.map(rs));
+							return true;
+						} catch (SQLException e) {
+							throw new DbException(e);
+						}
+					}
+				};
+
+				return StreamSupport.stream(rows, false).onClose(() -> {
+					try (conn; stmt; rs) {
+						// closing the result set, statement and connection, in that order
+					} catch (SQLException e) {
+						throw new DbException(e);
+					}
+				});
+			} catch (SQLException | RuntimeException e) {
+				// closing the statement also closes a result set that was opened
+				closeAfterFailure(stmt, e);
+				throw e;
+			}
+		} catch (SQLException | RuntimeException e) {
+			closeAfterFailure(conn, e);
+			throw e instanceof DbException ? (DbException) e : new DbException(e);
+		}
+	} // end streamRecipes
+
+	// Closes a resource on a failure path without losing the exception that caused it
+	private static void closeAfterFailure(AutoCloseable resource, Exception e) {
+		try {
+			resource.close();
+		} catch (Exception suppressed) {
+			e.addSuppressed(suppressed);
+		}
+	}
+
+	/*
+	 * Passes the recipe ID and name of every ingredient to the consumer, streaming
+	 * the rows like streamRecipes() does so large catalogs are never buffered.
+	 * Used to build the in-memory ingredient index.
+	 */
+	public void fetchIngredientNames(BiConsumer<Integer, String> consumer) {
+		String sql = "SELECT recipe_id, ingredient_name FROM " + INGREDIENT_TABLE;
+
+		try (Connection conn = DbConnection.getConnection()) {
+			startTransaction(conn);
+
+			try (PreparedStatement stmt = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY,
+					ResultSet.CONCUR_READ_ONLY)) {
+				stmt.setFetchSize(Integer.MIN_VALUE);
+
+				try (ResultSet rs = stmt.executeQuery()) {
+					while (rs.next()) {
+						consumer.accept(rs.getInt(1), rs.getString(2));
+					}
+				}
+
+				commitTransaction(conn);
+			} catch (Exception e) {
+				rollbackTransaction(conn);
+				throw new DbException(e);
+			}
+		} catch (SQLException e) {
+			throw new DbException(e);
+		}
+	} // end fetchIngredientNames
+
+	/*
+	 * Passes every recipe ID with each of its category IDs to the consumer. A
+	 * recipe without categories is passed once with a null category ID. Rows are
+	 * streamed; used to build the category facets.
+	 */
+	public void fetchRecipeCategoryIds(BiConsumer<Integer, Integer> consumer) {
+		// @formatter:off
+		String sql = ""
+			+ "SELECT r.recipe_id, rc.category_id "
+			+ "FROM " + RECIPE_TABLE + " r "
+			+ "LEFT JOIN " + RECIPE_CATEGORY_TABLE + " rc USING (recipe_id)";
+		// @formatter:on
+
+		try (Connection conn = DbConnection.getConnection()) {
+			startTransaction(conn);
+
+			try (PreparedStatement stmt = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY,
+					ResultSet.CONCUR_READ_ONLY)) {
+				stmt.setFetchSize(Integer.MIN_VALUE);
+
+				try (ResultSet rs = stmt.executeQuery()) {
+					while (rs.next()) {
+						int categoryId = rs.getInt(2);
+
+						consumer.accept(rs.getInt(1), rs.wasNull() ? null : categoryId);
+					}
+				}
+
+				commitTransaction(conn);
+			} catch (Exception e) {
+				rollbackTransaction(conn);
+				throw new DbException(e);
+			}
+		} catch (SQLException e) {
+			throw new DbException(e);
+		}
+	} // end fetchRecipeCategoryIds
+
+	/*
+	 * Loads the summary of every recipe for list screens. Two narrow queries, sent
+	 * together in one round trip, return the recipe columns and the recipe/category
+	 * pairs, both ordered by recipe_id, and are merged into a columnar
+	 * RecipeSummaries without creating a Recipe per row.
+	 */
+	public RecipeSummaries fetchRecipeSummaries() {
+		// @formatter:off
+		String sql = ""
+			+ "SELECT recipe_id, recipe_name, num_servings, "
+			+ "(COALESCE(TIME_TO_SEC(prep_time), 0) + COALESCE(TIME_TO_SEC(cook_time), 0)) DIV 60 AS total_minutes "
+			+ "FROM " + RECIPE_TABLE + " "
+			+ "ORDER BY recipe_id; "
+			+ "SELECT recipe_id, category_id "
+			+ "FROM " + RECIPE_CATEGORY_TABLE + " "
+			+ "ORDER BY recipe_id, category_id";
+		// @formatter:on
+
+		try (Connection conn = DbConnection.getConnection()) {
+			startTransaction(conn);
+
+			try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+				RecipeSummaries.Builder summaries = new RecipeSummaries.Builder();
+
+				stmt.execute();
+
+				try (ResultSet rs = stmt.getResultSet()) {
+					while (rs.next()) {
+						int servings = rs.getInt(3);
+
+						summaries.addRecipe(rs.getInt(1), rs.getString(2), rs.wasNull() ? null : servings,
+								rs.getInt(4));
+					}
+				}
+
+				if (stmt.getMoreResults()) {
+					try (ResultSet rs = stmt.getResultSet()) {
+						while (rs.next()) {
+							summaries.addCategory(rs.getInt(1), rs.getInt(2));
+						}
+					}
+				}
+
+				commitTransaction(conn);
+				return summaries.build();
+			} catch (Exception e) {
+				rollbackTransaction(conn);
+				throw new DbException(e);
+			}
+		} catch (SQLException e) {
+			throw new DbException(e);
+		}
+	} // end fetchRecipeSummaries
+
+	/*
+	 * Full-text search over recipe names and notes, ingredient names and step
+	 * text, using the FULLTEXT indexes on those columns. Each table contributes
+	 * its natural language relevance score for every matching row; the scores are
+	 * summed per recipe (a name or notes match counts double) and the best
+	 * recipes are returned first.
+	 */
+	public List<RecipeSearchHit> searchRecipes(String query, int limit) {
+		// @formatter:off
+		String sql = ""
+			+ "SELECT r.recipe_id, r.recipe_name, SUM(m.score) AS score "
+			+ "FROM ("
+			+ "  SELECT recipe_id, 2 * MATCH (recipe_name, notes) AGAINST (? IN NATURAL LANGUAGE MODE) AS score "
+			+ "  FROM " + RECIPE_TABLE + " "
+			+ "  WHERE MATCH (recipe_name, notes) AGAINST (? IN NATURAL LANGUAGE MODE) "
+			+ "  UNION ALL "
+			+ "  SELECT recipe_id, MATCH (ingredient_name) AGAINST (? IN NATURAL LANGUAGE MODE) "
+			+ "  FROM " + INGREDIENT_TABLE + " "
+			+ "  WHERE MATCH (ingredient_name) AGAINST (? IN NATURAL LANGUAGE MODE) "
+			+ "  UNION ALL "
+			+ "  SELECT recipe_id, MATCH (step_text) AGAINST (? IN NATURAL LANGUAGE MODE) "
+			+ "  FROM " + STEP_TABLE + " "
+			+ "  WHERE MATCH (step_text) AGAINST (? IN NATURAL LANGUAGE MODE)"
+			+ ") m "
+			+ "JOIN " + RECIPE_TABLE + " r USING (recipe_id) "
+			+ "GROUP BY r.recipe_id, r.recipe_name "
+			+ "ORDER BY score DESC, r.recipe_id "
+			+ "LIMIT ?";
+		// @formatter:on
+
+		try (Connection conn = DbConnection.getConnection()) {
+			startTransaction(conn);
+
+			try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+				for (int index = 1; index <= 6; index++) {
+					setParameter(stmt, index, query, String.class);
+				}
+				setParameter(stmt, 7, limit, Integer.class);
+
+				try (ResultSet rs = stmt.executeQuery()) {
+					List<RecipeSearchHit> hits = new ArrayList<>();
+					RowMapper<RecipeSearchHit> mapper = rowMapper(rs, RecipeSearchHit.class);
+
+					while (rs.next()) {
+						hits.add(mapper.map(rs));
+					}
+
+					commitTransaction(conn);
+					return hits;
+				}
+			} catch (Exception e) {
+				rollbackTransaction(conn);
+				throw new DbException(e);
+			}
+		} catch (SQLException e) {
+			throw new DbException(e);
+		}
+	} // end searchRecipes
+
+	public Recipe insertRecipe(Recipe recipe) {
+		try (Connection conn = DbConnection.getConnection()) {
+			startTransaction(conn);
+
+			try {
+				Integer recipeId = insertRecipeRow(conn, recipe);
+
+				commitTransaction(conn);
+
+				recipe.setRecipeId(recipeId);
+				return recipe;
+			} catch (Exception e) {
+				rollbackTransaction(conn);
+				throw new DbException(e);
+			}
+		} catch (SQLException e) {
+			throw new DbException(e);
+		}
+	} // end insertRecipe
+
+	/*
+	 * Saves the recipe with all of its ingredients, steps and categories on one
+	 * connection in one transaction: the recipe row, then one batched INSERT per
+	 * child table. Either everything is written or nothing is. The categories
+	 * are given separately, already resolved to their IDs, and the recipe's own
+	 * category list is ignored. A new recipe has no children yet, so the
+	 * ingredient and step orders simply count up from 1 without the SELECT ...
+	 * FOR UPDATE that addIngredients and addSteps need.
+	 */
+	public Recipe saveRecipe(Recipe recipe, List<Category> categories) {
+		try (Connection conn = DbConnection.getConnection()) {
+			startTransaction(conn);
+
+			try {
+				Integer recipeId = insertRecipeRow(conn, recipe);
+				List<Integer> ingredientOrders = new ArrayList<>();
+				List<Integer> stepOrders = new ArrayList<>();
+
+				List<Integer> ingredientIds = insertIngredients(conn, recipeId, recipe.getIngredients(),
+						new HashMap<>(Map.of(recipeId, 1)), ingredientOrders);
+				List<Integer> stepIds = insertSteps(conn, recipeId, recipe.getSteps(),
+						new HashMap<>(Map.of(recipeId, 1)), stepOrders);
+				insertRecipeCategories(conn, recipeId, categories);
+
+				commitTransaction(conn);
+
+				// Nothing is copied onto the recipe until the commit succeeds
+				recipe.setRecipeId(recipeId);
+				recipe.getIngredients().forEach(ingredient -> ingredient.setRecipeId(recipeId));
+				recipe.getSteps().forEach(step -> step.setRecipeId(recipeId));
+				setIds(recipe.getIngredients(), ingredientOrders, Ingredient::setIngredientOrder);
+				setIds(recipe.getSteps(), stepOrders, Step::setStepOrder);
+				setIds(recipe.getIngredients(), ingredientIds, Ingredient::setIngredientId);
+				setIds(recipe.getSteps(), stepIds, Step::setStepId);
+				return recipe;
+			} catch (Exception e) {
+				rollbackTransaction(conn);
+				throw new DbException(e);
+			}
+		} catch (SQLException e) {
+			throw new DbException(e);
+		}
+	} // end saveRecipe
+
+	// Inserts the recipe row and returns its generated ID
+	private Integer insertRecipeRow(Connection conn, Recipe recipe) throws SQLException {
+		// @formatter:off
+		String sql = "" + "INSERT INTO " + RECIPE_TABLE + " "
+			+ "(recipe_name, notes, num_servings, prep_time, cook_time) "
+			+ "VALUES "
+			+ "(?, ?, ?, ?, ?)";
+		// @formatter:on
+
+		try (PreparedStatement stmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+			setParameter(stmt, 1, recipe.getRecipeName(), String.class);
+			setParameter(stmt, 2, recipe.getNotes(), String.class);
+			setParameter(stmt, 3, recipe.getNumServings(), Integer.class);
+			setParameter(stmt, 4, recipe.getPrepTime(), LocalTime.class);
+			setParameter(stmt, 5, recipe.getCookTime(), LocalTime.class);
+
+			stmt.executeUpdate();
+			// autogenerated recipe_id comes back with the insert
+			return getGeneratedId(stmt);
+		}
+	}
+
+	private void insertRecipeCategories(Connection conn, Integer recipeId, List<Category> categories)
+			throws SQLException {
+		String sql = "INSERT INTO " + RECIPE_CATEGORY_TABLE + " (recipe_id, category_id) VALUES (?, ?)";
+
+		if (categories.isEmpty()) {
+			return;
+		}
+
+		try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+			for (Category category : categories) {
+				setParameter(stmt, 1, recipeId, Integer.class);
+				setParameter(stmt, 2, category.getCategoryId(), Integer.class);
+				stmt.addBatch();
+			}
+			stmt.executeBatch();
+		}
+	}
+
+	// Copies the generated IDs onto the entities, in batch order, once the transaction has committed
+	private static <T> void setIds(List<T> entities, List<Integer> ids, BiConsumer<T, Integer> setId) {
+		Iterator<T> entity = entities.iterator();
+
+		for (Integer id : ids) {
+			setId.accept(entity.next(), id);
+		}
+	}
+
+	public void executeBatch(List<String> sqlBatch) {
+		executeScript(sqlBatch.iterator(), sqlBatch.size());
+	}
+
+	/*
+	 * Runs the statements of a SQL script in order without holding the script in
+	 * memory. INSERTs are collected into a batch that is sent and committed every
+	 * batchSize statements; any other statement (DDL and the like) first flushes the
+	 * pending INSERTs and then runs on its own. MySQL commits DDL implicitly, so a
+	 * script that mixes DDL and data is never atomic; committing each batch keeps
+	 * the server's undo log small on very large seed files.
+	 */
+	public void executeScript(Iterator<String> statements, int batchSize) {
+		try (Connection conn = DbConnection.getConnection()) {
+			startTransaction(conn);
+
+			try (Statement stmt = conn.createStatement()) {
+				int pending = 0;
+
+				while (statements.hasNext()) {
+					String sql = statements.next();
+
+					if (isInsert(sql)) {
+						stmt.addBatch(sql);
+
+						if (++pending == batchSize) {
+							stmt.executeBatch();
+							commitTransaction(conn);
+							pending = 0;
+						}
+					} else {
+						if (pending > 0) {
+							stmt.executeBatch();
+							pending = 0;
+						}
+						stmt.execute(sql);
+					}
+				}
+
+				if (pending > 0) {
+					stmt.executeBatch();
+				}
+				commitTransaction(conn);
+			} catch (Exception e) {
+				rollbackTransaction(conn);
+				throw new DbException(e);
+			}
+		} catch (SQLException e) {
+			throw new DbException(e);
+		}
+	} // end executeScript
+
+	/*
+	 * Returns the checksum of every migration applied to the database, by version.
+	 * The checksum is null for migrations recorded by recipe_schema.sql or by an
+	 * older version of the runner. The migration table is created, or given its
+	 * newer columns, if needed.
+	 */
+	public Map<Integer, String> fetchAppliedMigrations() {
+		// @formatter:off
+		String createSql = ""
+			+ "CREATE TABLE IF NOT EXISTS " + MIGRATION_TABLE + " ("
+			+ "version INT NOT NULL, "
+			+ "description VARCHAR(128) NOT NULL, "
+			+ "checksum CHAR(64), "
+			+ "applied_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP, "
+			+ "execution_ms BIGINT, "
+			+ "PRIMARY KEY (version))";
+		String hasChecksumSql = ""
+			+ "SELECT COUNT(*) FROM information_schema.columns "
+			+ "WHERE table_schema = DATABASE() AND table_name = '" + MIGRATION_TABLE + "' AND column_name = 'checksum'";
+		String addColumnsSql = ""
+			+ "ALTER TABLE " + MIGRATION_TABLE + " "
+			+ "ADD COLUMN checksum CHAR(64) AFTER description, "
+			+ "ADD COLUMN execution_ms BIGINT";
+		// @formatter:on
+		String sql = "SELECT version, checksum FROM " + MIGRATION_TABLE;
+
+		try (Connection conn = DbConnection.getConnection()) {
+			startTransaction(conn);
 
-				try (PreparedStatement stmt = conn.prepareStatement(sql)) {
-					setParameter(stmt, 1, recipeId, Integer.class);
+			try (Statement stmt = conn.createStatement()) {
+				stmt.execute(createSql);
 
-					try (ResultSet rs = stmt.executeQuery()) {
-						if (rs.next()) {
-							recipe = extract(rs, Recipe.class);
-						}
+				try (ResultSet rs = stmt.executeQuery(hasChecksumSql)) {
+					if (rs.next() && rs.getInt(1) == 0) {
+						stmt.execute(addColumnsSql);
 					}
 				}
-				if (Objects.nonNull(recipe)) {
-					recipe.getIngredients().addAll(fetchRecipeIngredients(conn, recipeId));
-					recipe.getSteps().addAll(fetchRecipeSteps(conn, recipeId));
-					recipe.getCategories().addAll(fetchRecipeCategories(conn, recipeId));
+
+				try (ResultSet rs = stmt.executeQuery(sql)) {
+					Map<Integer, String> checksums = new HashMap<>();
+
+					while (rs.next()) {
+						checksums.put(rs.getInt(1), rs.getString(2));
+					}
+
+					commitTransaction(conn);
+					return checksums;
 				}
-				commitTransaction(conn);
-				return Optional.ofNullable(recipe);
 			} catch (Exception e) {
 				rollbackTransaction(conn);
 				throw new DbException(e);
@@ -62,97 +1077,162 @@ public class RecipeDao extends DaoBase {
 		} catch (SQLException e) {
 			throw new DbException(e);
 		}
-
-	}
+	} // end fetchAppliedMigrations
 
 	/*
-	 * Fixed red squigglies while typing by letting Java add "throws SQLException to
-	 * method name. The exception is already defined in the fetchRecipeById method,
-	 * which calls this method.
+	 * Runs the statements of a migration and records it, in one transaction on
+	 * one connection, so a failing DML migration leaves nothing behind. MySQL
+	 * commits DDL implicitly, so a migration containing DDL is only atomic up to
+	 * its last DDL statement; keep DDL migrations to statements that can be
+	 * retried.
+	 *
+	 * A statement of the form "CHUNK BY table.column SIZE n" makes the statement
+	 * after it a chunked data migration: it must contain two parameters, which are
+	 * bound to the first and last key of consecutive ranges of n keys between the
+	 * table's smallest and largest key. Each range is committed on its own, so row
+	 * locks are only held for one range at a time. A chunked statement commits
+	 * the statements before it and must be safe to run again, since the migration
+	 * is only recorded after its last statement.
 	 */
-	private List<Category> fetchRecipeCategories(Connection conn, Integer recipeId) throws SQLException {
+	public void applyMigration(int version, String description, String checksum, List<String> statements) {
 		// @formatter:off
 		String sql = ""
-			+ "SELECT c.* "
-			+ "FROM " + RECIPE_CATEGORY_TABLE + " rc "
-			+ "JOIN " + CATEGORY_TABLE + " c USING (category_id) "
-			+ "WHERE recipe_id = ? "
-			+ "ORDER BY c.category_name";
+			+ "INSERT INTO " + MIGRATION_TABLE + " "
+			+ "(version, description, checksum, execution_ms) "
+			+ "VALUES (?, ?, ?, ?)";
 		// @formatter:on
+		long start = System.nanoTime();
 
-		try (PreparedStatement stmt = conn.prepareStatement(sql)) {
-			setParameter(stmt, 1, recipeId, Integer.class);
+		try (Connection conn = DbConnection.getConnection()) {
+			startTransaction(conn);
 
-			try (ResultSet rs = stmt.executeQuery()) {
-				List<Category> categories = new LinkedList<Category>();
+			try (Statement stmt = conn.createStatement()) {
+				Matcher chunk = null;
+
+				for (String statement : statements) {
+					Matcher directive = CHUNK_DIRECTIVE.matcher(statement);
+
+					if (directive.matches()) {
+						chunk = directive;
+					} else if (Objects.nonNull(chunk)) {
+						commitTransaction(conn);
+						executeInChunks(conn, statement, chunk.group(1), chunk.group(2),
+								Integer.parseInt(chunk.group(3)));
+						chunk = null;
+					} else {
+						stmt.execute(statement);
+					}
+				}
 
-				while (rs.next()) {
-					categories.add(extract(rs, Category.class));
+				if (Objects.nonNull(chunk)) {
+					throw new DbException("Migration " + version + " ends with a CHUNK directive but no statement.");
+				}
+
+				try (PreparedStatement record = conn.prepareStatement(sql)) {
+					setParameter(record, 1, version, Integer.class);
+					setParameter(record, 2, description, String.class);
+					setParameter(record, 3, checksum, String.class);
+					setParameter(record, 4, (System.nanoTime() - start) / 1_000_000, Long.class);
+
+					record.executeUpdate();
 				}
-				return categories;
 
+				commitTransaction(conn);
+			} catch (Exception e) {
+				rollbackTransaction(conn);
+				throw new DbException(e);
 			}
+		} catch (SQLException e) {
+			throw new DbException(e);
 		}
+	} // end applyMigration
 
-	}
+	private void executeInChunks(Connection conn, String sql, String tableName, String keyName, int chunkSize)
+			throws SQLException {
+		String rangeSql = "SELECT MIN(" + keyName + "), MAX(" + keyName + ") FROM " + tableName;
+		long first;
+		long last;
 
-	/*
-	 * Fixed red squigglies while typing by letting Java add "throws SQLException to
-	 * method name. The exception is already defined in the fetchRecipeById method,
-	 * which calls this method.
-	 */
-	private List<Step> fetchRecipeSteps(Connection conn, Integer recipeId) throws SQLException {
-		String sql = "SELECT * FROM " + STEP_TABLE + " s WHERE s.recipe_id = ?";
+		try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery(rangeSql)) {
+			rs.next();
+			first = rs.getLong(1);
 
-		try (PreparedStatement stmt = conn.prepareStatement(sql)) {
-			setParameter(stmt, 1, recipeId, Integer.class);
+			if (rs.wasNull()) {
+				return;
+			}
+			last = rs.getLong(2);
+		}
 
-			try (ResultSet rs = stmt.executeQuery()) {
-				List<Step> steps = new LinkedList<Step>();
+		try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+			for (long from = first; from <= last; from += chunkSize) {
+				setParameter(stmt, 1, from, Long.class);
+				setParameter(stmt, 2, Math.min(from + chunkSize - 1, last), Long.class);
 
-				while (rs.next()) {
-					steps.add(extract(rs, Step.class));
-				}
-				return steps;
+				stmt.executeUpdate();
+				commitTransaction(conn);
 			}
 		}
 	}
 
-	/*
-	 * Fixed red squigglies while typing by letting Java add "throws SQLException to
-	 * method name. The exception is already defined in the fetchRecipeById method,
-	 * which calls this method.
-	 */
-	private List<Ingredient> fetchRecipeIngredients(Connection conn, Integer recipeId) throws SQLException {
-		// @formatter:off
-		String sql = ""
-			+ "SELECT i.*, u.unit_name_singular, u.unit_name_plural "
-			+ "FROM " + INGREDIENT_TABLE + " i "
-			+ "LEFT JOIN " + UNIT_TABLE + " u USING (unit_id) "
-			+ "WHERE  recipe_id = ? "
-			+ "ORDER BY i.ingredient_order";
-		// @formatter:on
+	// Fills in the checksum of a migration that was recorded without one
+	public void updateMigrationChecksum(int version, String checksum) {
+		String sql = "UPDATE " + MIGRATION_TABLE + " SET checksum = ? WHERE version = ? AND checksum IS NULL";
 
-		try (PreparedStatement stmt = conn.prepareStatement(sql)) {
-			setParameter(stmt, 1, recipeId, Integer.class);
+		try (Connection conn = DbConnection.getConnection()) {
+			startTransaction(conn);
 
-			try (ResultSet rs = stmt.executeQuery()) {
-				List<Ingredient> ingredients = new LinkedList<Ingredient>();
+			try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+				setParameter(stmt, 1, checksum, String.class);
+				setParameter(stmt, 2, version, Integer.class);
 
-				while (rs.next()) {
-					Ingredient ingredient = extract(rs, Ingredient.class);
-					Unit unit = extract(rs, Unit.class);
+				stmt.executeUpdate();
+				commitTransaction(conn);
+			} catch (Exception e) {
+				rollbackTransaction(conn);
+				throw new DbException(e);
+			}
+		} catch (SQLException e) {
+			throw new DbException(e);
+		}
+	} // end updateMigrationChecksum
+
+	/*
+	 * Runs the action while holding a MySQL named lock, so two application
+	 * instances starting at the same time don't apply the same migrations. The
+	 * lock belongs to a connection that is held for the duration of the action.
+	 */
+	public <T> T withMigrationLock(Supplier<T> action) {
+		try (Connection conn = DbConnection.getConnection()) {
+			try (PreparedStatement stmt = conn.prepareStatement("SELECT GET_LOCK(?, ?)")) {
+				setParameter(stmt, 1, MIGRATION_LOCK, String.class);
+				setParameter(stmt, 2, MIGRATION_LOCK_TIMEOUT_SECONDS, Integer.class);
+
+				try (ResultSet rs = stmt.executeQuery()) {
+					if (!rs.next() || rs.getInt(1) != 1) {
+						throw new DbException("Timed out waiting for another schema migration to finish.");
+					}
+				}
+			}
 
-					ingredient.setUnit(unit);
-					ingredients.add(ingredient);
+			try {
+				return action.get();
+			} finally {
+				try (PreparedStatement stmt = conn.prepareStatement("SELECT RELEASE_LOCK(?)")) {
+					setParameter(stmt, 1, MIGRATION_LOCK, String.class);
+					stmt.executeQuery().close();
 				}
-				return ingredients;
 			}
+		} catch (SQLException e) {
+			throw new DbException(e);
 		}
+	} // end withMigrationLock
+
+	private boolean isInsert(String sql) {
+		return sql.regionMatches(true, 0, "INSERT", 0, 6);
 	}
 
-	public List<Recipe> fetchAllRecipes() {
-		String sql = "SELECT * FROM " + RECIPE_TABLE + " ORDER BY recipe_name";
+	public List<Unit> fetchAllUnits() {
+		String sql = "SELECT * FROM " + UNIT_TABLE + " ORDER BY unit_name_singular";
 
 		try (Connection conn = DbConnection.getConnection()) {
 			startTransaction(conn);
@@ -160,48 +1240,47 @@ public class RecipeDao extends DaoBase {
 			try (PreparedStatement stmt = conn.prepareStatement(sql)) {
 
 				try (ResultSet rs = stmt.executeQuery()) {
-					List<Recipe> recipes = new LinkedList<>();
+					List<Unit> units = new LinkedList<>();
+					RowMapper<Unit> mapper = rowMapper(rs, Unit.class);
 
 					while (rs.next()) {
-						recipes.add(extract(rs, Recipe.class));
+						units.add(mapper.map(rs));
 					}
-					return recipes;
+
+					return units;
 				}
+
 			} catch (Exception e) {
 				rollbackTransaction(conn);
 				throw new DbException(e);
 			}
+
 		} catch (SQLException e) {
 			throw new DbException(e);
 		}
-	} // end fetchAllRecipes
 
-	public Recipe insertRecipe(Recipe recipe) {
-		// @formatter:off
-		String sql = "" + "INSERT INTO " + RECIPE_TABLE + " "
-			+ "(recipe_name, notes, num_servings, prep_time, cook_time) "
-			+ "VALUES "
-			+ "(?, ?, ?, ?, ?)";
-		// @formatter:on	
+	}
 
+	/*
+	 * Adds one ingredient the same way addIngredients adds many: the recipe row is
+	 * locked while its next ingredient order is read, then the ingredient is
+	 * inserted with that order. The order is known before the INSERT, so there is
+	 * nothing to read back: one locking SELECT, one INSERT and the COMMIT. Writers
+	 * for the same recipe queue on the recipe row, so they can neither get the
+	 * same order nor deadlock on the ingredient index.
+	 */
+	public void addIngredientToRecipe(Ingredient ingredient) {
 		try (Connection conn = DbConnection.getConnection()) {
 			startTransaction(conn);
 
-			try (PreparedStatement stmt = conn.prepareStatement(sql)) {
-				setParameter(stmt, 1, recipe.getRecipeName(), String.class);
-				setParameter(stmt, 2, recipe.getNotes(), String.class);
-				setParameter(stmt, 3, recipe.getNumServings(), Integer.class);
-				setParameter(stmt, 4, recipe.getPrepTime(), LocalTime.class);
-				setParameter(stmt, 5, recipe.getCookTime(), LocalTime.class);
-
-				stmt.executeUpdate();
-				// fetch autogenerated recipe_id
-				Integer recipeId = getLastInsertId(conn, RECIPE_TABLE);
-
+			try {
+				List<Integer> orders = new ArrayList<>();
+				List<Integer> ingredientIds = insertIngredients(conn, null, List.of(ingredient), new HashMap<>(),
+						orders);
 				commitTransaction(conn);
 
-				recipe.setRecipeId(recipeId);
-				return recipe;
+				ingredient.setIngredientId(ingredientIds.get(0));
+				ingredient.setIngredientOrder(orders.get(0));
 			} catch (Exception e) {
 				rollbackTransaction(conn);
 				throw new DbException(e);
@@ -209,120 +1288,279 @@ public class RecipeDao extends DaoBase {
 		} catch (SQLException e) {
 			throw new DbException(e);
 		}
-	} // end insertRecipe
+	} // end addIngredientToRecipe
 
-	public void executeBatch(List<String> sqlBatch) {
+	// See addIngredientToRecipe for how the step order is assigned
+	public void addStepToRecipe(Step step) {
 		try (Connection conn = DbConnection.getConnection()) {
 			startTransaction(conn);
 
-			try (Statement stmt = conn.createStatement()) {
-				for (String sql : sqlBatch) {
-					stmt.addBatch(sql);
-				}
-				stmt.executeBatch();
+			try {
+				List<Integer> orders = new ArrayList<>();
+				List<Integer> stepIds = insertSteps(conn, null, List.of(step), new HashMap<>(), orders);
 				commitTransaction(conn);
+
+				step.setStepId(stepIds.get(0));
+				step.setStepOrder(orders.get(0));
 			} catch (Exception e) {
 				rollbackTransaction(conn);
-				throw new DbException();
+				throw new DbException(e);
 			}
 		} catch (SQLException e) {
 			throw new DbException(e);
 		}
+
+	} // end addStepToRecipe
+
+	/*
+	 * Renumbers the recipe's ingredients 1..n in the order of the given IDs. The
+	 * list must contain every ingredient of the recipe exactly once. Returns false,
+	 * and changes nothing, if it doesn't.
+	 */
+	public boolean reorderIngredients(Integer recipeId, List<Integer> ingredientIds) {
+		return reorder(INGREDIENT_TABLE, "ingredient_id", "ingredient_order", recipeId, ingredientIds);
 	}
 
-	public List<Unit> fetchAllUnits() {
-		String sql = "SELECT * FROM " + UNIT_TABLE + " ORDER BY unit_name_singular";
+	// Renumbers the recipe's steps. See reorderIngredients.
+	public boolean reorderSteps(Integer recipeId, List<Integer> stepIds) {
+		return reorder(STEP_TABLE, "step_id", "step_order", recipeId, stepIds);
+	}
+
+	/*
+	 * The orders are first negated so that the new values never collide with the
+	 * old ones on the unique (recipe_id, order) key, then every child gets its new
+	 * order in one batch. Any child left with a negative order wasn't in the list,
+	 * so the whole change is rolled back.
+	 */
+	private boolean reorder(String tableName, String idName, String orderName, Integer recipeId,
+			List<Integer> childIds) {
+		// @formatter:off
+		String moveAsideSql = "UPDATE " + tableName
+			+ " SET " + orderName + " = -" + orderName + " WHERE recipe_id = ?";
+		String updateSql = "UPDATE " + tableName
+			+ " SET " + orderName + " = ? WHERE " + idName + " = ? AND recipe_id = ? AND " + orderName + " < 0";
+		String checkSql = "SELECT COUNT(*) FROM " + tableName
+			+ " WHERE recipe_id = ? AND " + orderName + " < 0";
+		// @formatter:on
 
 		try (Connection conn = DbConnection.getConnection()) {
 			startTransaction(conn);
 
-			try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+			try {
+				lockRecipe(conn, LOCK_RECIPE_SQL, recipeId);
 
-				try (ResultSet rs = stmt.executeQuery()) {
-					List<Unit> units = new LinkedList<>();
+				try (PreparedStatement stmt = conn.prepareStatement(moveAsideSql)) {
+					setParameter(stmt, 1, recipeId, Integer.class);
+					stmt.executeUpdate();
+				}
 
-					while (rs.next()) {
-						units.add(extract(rs, Unit.class));
+				try (PreparedStatement stmt = conn.prepareStatement(updateSql)) {
+					for (int index = 0; index < childIds.size(); index++) {
+						setParameter(stmt, 1, index + 1, Integer.class);
+						setParameter(stmt, 2, childIds.get(index), Integer.class);
+						setParameter(stmt, 3, recipeId, Integer.class);
+						stmt.addBatch();
 					}
 
-					return units;
+					for (int count : stmt.executeBatch()) {
+						if (count != 1) {
+							rollbackTransaction(conn);
+							return false;
+						}
+					}
+				}
+
+				try (PreparedStatement stmt = conn.prepareStatement(checkSql)) {
+					setParameter(stmt, 1, recipeId, Integer.class);
+
+					try (ResultSet rs = stmt.executeQuery()) {
+						if (rs.next() && rs.getInt(1) != 0) {
+							rollbackTransaction(conn);
+							return false;
+						}
+					}
 				}
 
+				commitTransaction(conn);
+				return true;
 			} catch (Exception e) {
 				rollbackTransaction(conn);
 				throw new DbException(e);
 			}
-
 		} catch (SQLException e) {
 			throw new DbException(e);
 		}
+	} // end reorder
 
-	}
-
-	public void addIngredientToRecipe(Ingredient ingredient) {
-		// @formatter:off
-		String sql = "INSERT INTO " + INGREDIENT_TABLE
-			+ " (recipe_id, unit_id, ingredient_name, instruction, ingredient_order, amount) "
-			+ "VALUES (?, ? ,?, ?, ?, ?)";
-		// @formatter:on
+	/*
+	 * Adds all of the ingredients in one transaction using a JDBC batch. The next
+	 * ingredient order is read (and the recipe row locked) once per recipe and
+	 * then incremented in memory, so the cost is one SELECT ... FOR UPDATE per
+	 * recipe plus one batched INSERT. With
+	 * rewriteBatchedStatements on the connection URL, the driver sends the batch as
+	 * multi-row INSERT statements.
+	 */
+	public void addIngredients(List<Ingredient> ingredients) {
+		if (ingredients.isEmpty()) {
+			return;
+		}
 
 		try (Connection conn = DbConnection.getConnection()) {
 			startTransaction(conn);
 
-			// Count number of child rows in ingredient table to get ingredient order
 			try {
-				Integer order = getNextSequenceNumber(conn, ingredient.getRecipeId(), INGREDIENT_TABLE, "recipe_id");
-
-				try (PreparedStatement stmt = conn.prepareStatement(sql)) {
-					setParameter(stmt, 1, ingredient.getRecipeId(), Integer.class);
-					setParameter(stmt, 2, ingredient.getUnit().getUnitId(), Integer.class);
-					setParameter(stmt, 3, ingredient.getIngredientName(), String.class);
-					setParameter(stmt, 4, ingredient.getInstruction(), String.class);
-					setParameter(stmt, 5, order, Integer.class);
-					setParameter(stmt, 6, ingredient.getAmount(), BigDecimal.class);
-
-					stmt.executeUpdate();
-					commitTransaction(conn);
-				}
+				List<Integer> orders = new ArrayList<>();
+				List<Integer> ingredientIds = insertIngredients(conn, null, ingredients, new HashMap<>(), orders);
+				commitTransaction(conn);
 
+				setIds(ingredients, orders, Ingredient::setIngredientOrder);
+				setIds(ingredients, ingredientIds, Ingredient::setIngredientId);
 			} catch (Exception e) {
 				rollbackTransaction(conn);
 				throw new DbException(e);
 			}
-
 		} catch (SQLException e) {
 			throw new DbException(e);
 		}
-	}
+	} // end addIngredients
 
-	public void addStepToRecipe(Step step) {
-		String sql = "INSERT INTO " + STEP_TABLE + " (recipe_id, step_order, step_text)" + " VALUES (?, ?, ?)";
+	// Adds all of the steps in one transaction using a JDBC batch. See addIngredients.
+	public void addSteps(List<Step> steps) {
+		if (steps.isEmpty()) {
+			return;
+		}
 
 		try (Connection conn = DbConnection.getConnection()) {
 			startTransaction(conn);
 
 			try {
-				Integer order = getNextSequenceNumber(conn, step.getRecipeId(), STEP_TABLE, "recipe_id");
-
-				try (PreparedStatement stmt = conn.prepareStatement(sql)) {
-					setParameter(stmt, 1, step.getRecipeId(), Integer.class);
-					setParameter(stmt, 2, order, Integer.class);
-					setParameter(stmt, 3, step.getStepText(), String.class);
-
-					stmt.executeUpdate();
-					commitTransaction(conn);
-				}
+				List<Integer> orders = new ArrayList<>();
+				List<Integer> stepIds = insertSteps(conn, null, steps, new HashMap<>(), orders);
+				commitTransaction(conn);
 
+				setIds(steps, orders, Step::setStepOrder);
+				setIds(steps, stepIds, Step::setStepId);
 			} catch (Exception e) {
 				rollbackTransaction(conn);
 				throw new DbException(e);
-
 			}
 		} catch (SQLException e) {
 			throw new DbException(e);
 		}
+	} // end addSteps
 
-	} // end addStepToRecipe
+	/*
+	 * Batches the ingredients into one INSERT and returns the generated IDs; the
+	 * order given to each ingredient is added to orders. The ingredients are
+	 * not changed, so the caller copies the IDs and orders onto them only once
+	 * the transaction commits. recipeId, when not null, is written in place of
+	 * each ingredient's own recipe ID. nextOrder holds the next ingredient order
+	 * of each recipe that is already known; any other recipe is locked and its
+	 * order read from the table before the batch is built.
+	 */
+	private List<Integer> insertIngredients(Connection conn, Integer recipeId, List<Ingredient> ingredients,
+			Map<Integer, Integer> nextOrder, List<Integer> orders) throws SQLException {
+		// @formatter:off
+		String sql = "INSERT INTO " + INGREDIENT_TABLE
+			+ " (recipe_id, unit_id, ingredient_name, instruction, ingredient_order, amount) "
+			+ "VALUES (?, ?, ?, ?, ?, ?)";
+		// @formatter:on
+
+		if (ingredients.isEmpty()) {
+			return List.of();
+		}
+
+		List<Integer> ownerIds = new ArrayList<>(ingredients.size());
+
+		for (Ingredient ingredient : ingredients) {
+			ownerIds.add(Objects.isNull(recipeId) ? ingredient.getRecipeId() : recipeId);
+		}
+
+		lockNextOrders(conn, nextOrder, ownerIds, INGREDIENT_TABLE, "ingredient_order");
+
+		try (PreparedStatement stmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+			Iterator<Integer> owner = ownerIds.iterator();
+
+			for (Ingredient ingredient : ingredients) {
+				Integer ownerId = owner.next();
+				Integer order = takeNextOrder(nextOrder, ownerId);
+				Integer unitId = Objects.isNull(ingredient.getUnit()) ? null : ingredient.getUnit().getUnitId();
+
+				setParameter(stmt, 1, ownerId, Integer.class);
+				setParameter(stmt, 2, unitId, Integer.class);
+				setParameter(stmt, 3, ingredient.getIngredientName(), String.class);
+				setParameter(stmt, 4, ingredient.getInstruction(), String.class);
+				setParameter(stmt, 5, order, Integer.class);
+				setParameter(stmt, 6, ingredient.getAmount(), BigDecimal.class);
+				stmt.addBatch();
+
+				orders.add(order);
+			}
+
+			stmt.executeBatch();
+			return getGeneratedIds(stmt);
+		}
+	}
+
+	// Batches the steps into one INSERT and returns the generated IDs. See insertIngredients.
+	private List<Integer> insertSteps(Connection conn, Integer recipeId, List<Step> steps,
+			Map<Integer, Integer> nextOrder, List<Integer> orders) throws SQLException {
+		String sql = "INSERT INTO " + STEP_TABLE + " (recipe_id, step_order, step_text)" + " VALUES (?, ?, ?)";
+
+		if (steps.isEmpty()) {
+			return List.of();
+		}
+
+		List<Integer> ownerIds = new ArrayList<>(steps.size());
+
+		for (Step step : steps) {
+			ownerIds.add(Objects.isNull(recipeId) ? step.getRecipeId() : recipeId);
+		}
+
+		lockNextOrders(conn, nextOrder, ownerIds, STEP_TABLE, "step_order");
+
+		try (PreparedStatement stmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+			Iterator<Integer> owner = ownerIds.iterator();
+
+			for (Step step : steps) {
+				Integer ownerId = owner.next();
+				Integer order = takeNextOrder(nextOrder, ownerId);
+
+				setParameter(stmt, 1, ownerId, Integer.class);
+				setParameter(stmt, 2, order, Integer.class);
+				setParameter(stmt, 3, step.getStepText(), String.class);
+				stmt.addBatch();
+
+				orders.add(order);
+			}
+
+			stmt.executeBatch();
+			return getGeneratedIds(stmt);
+		}
+	}
+
+	/*
+	 * Locks every recipe that isn't in nextOrder yet and reads its next order.
+	 * The recipes are locked in ID order, so two batches that share recipes
+	 * queue behind each other instead of deadlocking.
+	 */
+	private void lockNextOrders(Connection conn, Map<Integer, Integer> nextOrder, Collection<Integer> recipeIds,
+			String tableName, String orderName) throws SQLException {
+		for (Integer recipeId : new TreeSet<>(recipeIds)) {
+			if (!nextOrder.containsKey(recipeId)) {
+				nextOrder.put(recipeId,
+						lockNextSequenceNumber(conn, recipeId, RECIPE_TABLE, tableName, "recipe_id", orderName));
+			}
+		}
+	}
+
+	// Hands out the recipe's next order and counts up in memory
+	private static Integer takeNextOrder(Map<Integer, Integer> nextOrder, Integer recipeId) {
+		Integer order = nextOrder.get(recipeId);
+
+		nextOrder.put(recipeId, order + 1);
+		return order;
+	}
 
 	public List<Category> fetchAllCategories() {
 		String sql = "SELECT * FROM " + CATEGORY_TABLE + " ORDER BY category_name";
@@ -334,9 +1572,10 @@ public class RecipeDao extends DaoBase {
 
 				try (ResultSet rs = stmt.executeQuery()) {
 					List<Category> categories = new LinkedList<>();
+					RowMapper<Category> mapper = rowMapper(rs, Category.class);
 
 					while (rs.next()) {
-						categories.add(extract(rs, Category.class));
+						categories.add(mapper.map(rs));
 					}
 
 					return categories;
@@ -353,18 +1592,18 @@ public class RecipeDao extends DaoBase {
 
 	} // end fetchAllCategories
 
-	public void addCategoryToRecipe(Integer recipeId, String category) {
-		// Subqueries must be inside parentheses
-		String subQuery = "(SELECT category_id FROM " + CATEGORY_TABLE + " WHERE category_name = ?)";
-
-		String sql = "INSERT INTO " + RECIPE_CATEGORY_TABLE + " (recipe_id, category_id) VALUES (?, " + subQuery + ")";
+	// The category ID is resolved by the caller from the category reference table
+	public void addCategoryToRecipe(Integer recipeId, Integer categoryId) {
+		String sql = "INSERT INTO " + RECIPE_CATEGORY_TABLE + " (recipe_id, category_id) VALUES (?, ?)";
 
 		try (Connection conn = DbConnection.getConnection()) {
 			startTransaction(conn);
 
 			try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+				lockRecipe(conn, LOCK_RECIPE_SQL, recipeId);
+
 				setParameter(stmt, 1, recipeId, Integer.class);
-				setParameter(stmt, 2, category, String.class);
+				setParameter(stmt, 2, categoryId, Integer.class);
 
 				stmt.executeUpdate();
 				commitTransaction(conn);
@@ -412,6 +1651,8 @@ public class RecipeDao extends DaoBase {
 			startTransaction(conn);
 
 			try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+				lockRecipe(conn, LOCK_STEP_RECIPE_SQL, step.getStepId());
+
 				setParameter(stmt, 1, step.getStepText(), String.class);
 				setParameter(stmt, 2, step.getStepId(), Integer.class);
 
@@ -435,6 +1676,23 @@ public class RecipeDao extends DaoBase {
 		}
 	} // end modifyRecipeStep
 
+	/*
+	 * Locks the recipe row until the transaction ends. Every write to a recipe's
+	 * ingredients, steps or categories takes this lock first (the inserts take it
+	 * in lockNextSequenceNumber), which keeps those writers from deadlocking on
+	 * each other and lets the parallel fetchRecipeById hold them off with a
+	 * shared lock on the same row.
+	 */
+	private void lockRecipe(Connection conn, String lockSql, Integer id) throws SQLException {
+		try (PreparedStatement stmt = conn.prepareStatement(lockSql)) {
+			setParameter(stmt, 1, id, Integer.class);
+
+			try (ResultSet rs = stmt.executeQuery()) {
+				// Reading the row is what locks it; a missing recipe fails on the write instead
+			}
+		}
+	}
+
 	public boolean deleteRecipe(Integer recipeId) {
 		String sql = "DELETE FROM " + RECIPE_TABLE + " WHERE recipe_id = ?";
 
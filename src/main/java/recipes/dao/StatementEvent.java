@@ -0,0 +1,30 @@
+package recipes.dao;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/*
+ * JFR event for one statement execution on a pooled connection, emitted by
+ * TimedStatement. Reading the rows of a query happens after the event ends.
+ */
+@Name("recipes.Statement")
+@Label("Statement Execution")
+@Description("Execution of one JDBC statement, not including reading its rows")
+@Category({ "Recipes", "Database" })
+@StackTrace(false)
+class StatementEvent extends Event {
+	@Label("SQL")
+	String sql;
+
+	@Label("Method")
+	String method;
+
+	@Label("Update Count")
+	@Description("Rows changed by an update or a batch, -1 for a query")
+	long updateCount;
+
+} // end CLASS
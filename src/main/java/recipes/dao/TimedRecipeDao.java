@@ -0,0 +1,337 @@
+package recipes.dao;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+import java.util.stream.Stream;
+
+import recipes.entity.Category;
+import recipes.entity.Ingredient;
+import recipes.entity.Recipe;
+import recipes.entity.RecipeSearchHit;
+import recipes.entity.RecipeSummaries;
+import recipes.entity.Step;
+import recipes.entity.Unit;
+import recipes.metrics.Metrics;
+import recipes.metrics.MetricsRegistry;
+
+/*
+ * A RecipeDao that records every operation to Metrics.registry(): the time it
+ * took (dao.<operation>), the rows it returned or wrote (dao.<operation>.rows)
+ * and how often it failed (dao.<operation>.errors, plus db.error.<cause> by
+ * the class of the root cause). Every operation is timed; rows are counted
+ * only for operations that return or write them. Each operation is also a
+ * DaoOperationEvent, with its table and recipe ID, in a running flight
+ * recording.
+ */
+public class TimedRecipeDao extends RecipeDao {
+
+	/*
+	 * The timed operations, with their metric names built once rather than on
+	 * every call.
+	 */
+	private enum Operation {
+		FETCH_RECIPE_BY_ID("fetchRecipeById"),
+		FETCH_RECIPE_BY_ID_PARALLEL("fetchRecipeByIdParallel"),
+		FETCH_RECIPES_BY_IDS("fetchRecipesByIds"),
+		FETCH_ALL_RECIPES_WITH_CHILDREN("fetchAllRecipesWithChildren"),
+		FETCH_ALL_RECIPES("fetchAllRecipes"),
+		FETCH_RECIPE_PAGE("fetchRecipePage"),
+		STREAM_RECIPES("streamRecipes"),
+		FETCH_INGREDIENT_NAMES("fetchIngredientNames"),
+		FETCH_RECIPE_CATEGORY_IDS("fetchRecipeCategoryIds"),
+		FETCH_RECIPE_SUMMARIES("fetchRecipeSummaries"),
+		SEARCH_RECIPES("searchRecipes"),
+		INSERT_RECIPE("insertRecipe"),
+		SAVE_RECIPE("saveRecipe"),
+		EXECUTE_SCRIPT("executeScript"),
+		FETCH_APPLIED_MIGRATIONS("fetchAppliedMigrations"),
+		APPLY_MIGRATION("applyMigration"),
+		UPDATE_MIGRATION_CHECKSUM("updateMigrationChecksum"),
+		FETCH_ALL_UNITS("fetchAllUnits"),
+		ADD_INGREDIENT_TO_RECIPE("addIngredientToRecipe"),
+		ADD_STEP_TO_RECIPE("addStepToRecipe"),
+		REORDER_INGREDIENTS("reorderIngredients"),
+		REORDER_STEPS("reorderSteps"),
+		ADD_INGREDIENTS("addIngredients"),
+		ADD_STEPS("addSteps"),
+		FETCH_ALL_CATEGORIES("fetchAllCategories"),
+		ADD_CATEGORY_TO_RECIPE("addCategoryToRecipe"),
+		FETCH_RECIPE_STEPS("fetchRecipeSteps"),
+		MODIFY_RECIPE_STEP("modifyRecipeStep"),
+		DELETE_RECIPE("deleteRecipe");
+
+		private final String operationName;
+		private final String timerName;
+		private final String rowsName;
+		private final String errorsName;
+
+		Operation(String name) {
+			this.operationName = name;
+			this.timerName = "dao." + name;
+			this.rowsName = timerName + ".rows";
+			this.errorsName = timerName + ".errors";
+		}
+	}
+
+	@Override
+	public Optional<Recipe> fetchRecipeById(Integer recipeId) {
+		return timed(Operation.FETCH_RECIPE_BY_ID, RECIPE_TABLE, recipeId, () -> super.fetchRecipeById(recipeId),
+				TimedRecipeDao::present);
+	}
+
+	@Override
+	public Optional<Recipe> fetchRecipeById(Integer recipeId, Executor executor) {
+		return timed(Operation.FETCH_RECIPE_BY_ID_PARALLEL, RECIPE_TABLE, recipeId,
+				() -> super.fetchRecipeById(recipeId, executor), TimedRecipeDao::present);
+	}
+
+	@Override
+	public List<Recipe> fetchRecipesByIds(Collection<Integer> recipeIds) {
+		return timed(Operation.FETCH_RECIPES_BY_IDS, RECIPE_TABLE, null, () -> super.fetchRecipesByIds(recipeIds),
+				List::size);
+	}
+
+	@Override
+	public void fetchAllRecipesWithChildren(Consumer<Recipe> consumer) {
+		LongAdder rows = new LongAdder();
+
+		timedRun(Operation.FETCH_ALL_RECIPES_WITH_CHILDREN, RECIPE_TABLE, null,
+				() -> super.fetchAllRecipesWithChildren(recipe -> {
+					rows.increment();
+					consumer.accept(recipe);
+				}), rows::sum);
+	}
+
+	@Override
+	public List<Recipe> fetchAllRecipes() {
+		return timed(Operation.FETCH_ALL_RECIPES, RECIPE_TABLE, null, super::fetchAllRecipes, List::size);
+	}
+
+	@Override
+	public List<Recipe> fetchRecipePage(Integer afterRecipeId, int limit) {
+		return timed(Operation.FETCH_RECIPE_PAGE, RECIPE_TABLE, null, () -> super.fetchRecipePage(afterRecipeId, limit),
+				List::size);
+	}
+
+	// Only opening the stream is timed; the rows are read as the caller consumes them
+	@Override
+	public Stream<Recipe> streamRecipes() {
+		return timed(Operation.STREAM_RECIPES, RECIPE_TABLE, null, super::streamRecipes, stream -> 0);
+	}
+
+	@Override
+	public void fetchIngredientNames(BiConsumer<Integer, String> consumer) {
+		LongAdder rows = new LongAdder();
+
+		timedRun(Operation.FETCH_INGREDIENT_NAMES, INGREDIENT_TABLE, null,
+				() -> super.fetchIngredientNames((recipeId, name) -> {
+					rows.increment();
+					consumer.accept(recipeId, name);
+				}), rows::sum);
+	}
+
+	@Override
+	public void fetchRecipeCategoryIds(BiConsumer<Integer, Integer> consumer) {
+		LongAdder rows = new LongAdder();
+
+		timedRun(Operation.FETCH_RECIPE_CATEGORY_IDS, RECIPE_CATEGORY_TABLE, null,
+				() -> super.fetchRecipeCategoryIds((recipeId, categoryId) -> {
+					rows.increment();
+					consumer.accept(recipeId, categoryId);
+				}), rows::sum);
+	}
+
+	@Override
+	public RecipeSummaries fetchRecipeSummaries() {
+		return timed(Operation.FETCH_RECIPE_SUMMARIES, RECIPE_TABLE, null, super::fetchRecipeSummaries,
+				RecipeSummaries::size);
+	}
+
+	@Override
+	public List<RecipeSearchHit> searchRecipes(String query, int limit) {
+		return timed(Operation.SEARCH_RECIPES, RECIPE_TABLE, null, () -> super.searchRecipes(query, limit), List::size);
+	}
+
+	@Override
+	public Recipe insertRecipe(Recipe recipe) {
+		return timed(Operation.INSERT_RECIPE, RECIPE_TABLE, null, () -> super.insertRecipe(recipe), inserted -> 1);
+	}
+
+	@Override
+	public Recipe saveRecipe(Recipe recipe, List<Category> categories) {
+		return timed(Operation.SAVE_RECIPE, RECIPE_TABLE, null, () -> super.saveRecipe(recipe, categories), saved -> 1
+				+ saved.getIngredients().size() + saved.getSteps().size() + categories.size());
+	}
+
+	// executeBatch isn't overridden: it runs through executeScript, which is timed once here
+	@Override
+	public void executeScript(Iterator<String> statements, int batchSize) {
+		timedRun(Operation.EXECUTE_SCRIPT, null, null, () -> super.executeScript(statements, batchSize), null);
+	}
+
+	@Override
+	public Map<Integer, String> fetchAppliedMigrations() {
+		return timed(Operation.FETCH_APPLIED_MIGRATIONS, MIGRATION_TABLE, null, super::fetchAppliedMigrations,
+				Map::size);
+	}
+
+	@Override
+	public void applyMigration(int version, String description, String checksum, List<String> statements) {
+		timedRun(Operation.APPLY_MIGRATION, MIGRATION_TABLE, null,
+				() -> super.applyMigration(version, description, checksum, statements), null);
+	}
+
+	@Override
+	public void updateMigrationChecksum(int version, String checksum) {
+		timedRun(Operation.UPDATE_MIGRATION_CHECKSUM, MIGRATION_TABLE, null,
+				() -> super.updateMigrationChecksum(version, checksum), null);
+	}
+
+	@Override
+	public List<Unit> fetchAllUnits() {
+		return timed(Operation.FETCH_ALL_UNITS, UNIT_TABLE, null, super::fetchAllUnits, List::size);
+	}
+
+	@Override
+	public void addIngredientToRecipe(Ingredient ingredient) {
+		timedRun(Operation.ADD_INGREDIENT_TO_RECIPE, INGREDIENT_TABLE, ingredient.getRecipeId(),
+				() -> super.addIngredientToRecipe(ingredient), null);
+	}
+
+	@Override
+	public void addStepToRecipe(Step step) {
+		timedRun(Operation.ADD_STEP_TO_RECIPE, STEP_TABLE, step.getRecipeId(), () -> super.addStepToRecipe(step), null);
+	}
+
+	@Override
+	public boolean reorderIngredients(Integer recipeId, List<Integer> ingredientIds) {
+		return timed(Operation.REORDER_INGREDIENTS, INGREDIENT_TABLE, recipeId,
+				() -> super.reorderIngredients(recipeId, ingredientIds),
+				reordered -> reordered ? ingredientIds.size() : 0);
+	}
+
+	@Override
+	public boolean reorderSteps(Integer recipeId, List<Integer> stepIds) {
+		return timed(Operation.REORDER_STEPS, STEP_TABLE, recipeId, () -> super.reorderSteps(recipeId, stepIds),
+				reordered -> reordered ? stepIds.size() : 0);
+	}
+
+	@Override
+	public void addIngredients(List<Ingredient> ingredients) {
+		timedRun(Operation.ADD_INGREDIENTS, INGREDIENT_TABLE, null, () -> super.addIngredients(ingredients),
+				ingredients::size);
+	}
+
+	@Override
+	public void addSteps(List<Step> steps) {
+		timedRun(Operation.ADD_STEPS, STEP_TABLE, null, () -> super.addSteps(steps), steps::size);
+	}
+
+	@Override
+	public List<Category> fetchAllCategories() {
+		return timed(Operation.FETCH_ALL_CATEGORIES, CATEGORY_TABLE, null, super::fetchAllCategories, List::size);
+	}
+
+	@Override
+	public void addCategoryToRecipe(Integer recipeId, Integer categoryId) {
+		timedRun(Operation.ADD_CATEGORY_TO_RECIPE, RECIPE_CATEGORY_TABLE, recipeId,
+				() -> super.addCategoryToRecipe(recipeId, categoryId), null);
+	}
+
+	@Override
+	public List<Step> fetchRecipeSteps(Integer recipeId) {
+		return timed(Operation.FETCH_RECIPE_STEPS, STEP_TABLE, recipeId, () -> super.fetchRecipeSteps(recipeId),
+				List::size);
+	}
+
+	@Override
+	public boolean modifyRecipeStep(Step step) {
+		return timed(Operation.MODIFY_RECIPE_STEP, STEP_TABLE, step.getRecipeId(), () -> super.modifyRecipeStep(step),
+				modified -> modified ? 1 : 0);
+	}
+
+	@Override
+	public boolean deleteRecipe(Integer recipeId) {
+		return timed(Operation.DELETE_RECIPE, RECIPE_TABLE, recipeId, () -> super.deleteRecipe(recipeId),
+				deleted -> deleted ? 1 : 0);
+	}
+
+	/*
+	 * Runs the operation and records its time, and either its row count (when
+	 * rows is not null) or the failure. The table and recipe ID (either may be
+	 * null) only go into the flight recorder event.
+	 */
+	private static <T> T timed(Operation operation, String table, Integer recipeId, Supplier<T> call,
+			ToLongFunction<T> rows) {
+		MetricsRegistry registry = Metrics.registry();
+		DaoOperationEvent event = new DaoOperationEvent();
+		long rowCount = 0;
+		boolean failed = true;
+		long start = System.nanoTime();
+
+		event.begin();
+
+		try {
+			T result = call.get();
+
+			failed = false;
+			if (Objects.nonNull(rows)) {
+				rowCount = rows.applyAsLong(result);
+				registry.increment(operation.rowsName, rowCount);
+			}
+			return result;
+		} catch (RuntimeException e) {
+			registry.increment("db.error." + rootCauseName(e), 1);
+			throw e;
+		} finally {
+			registry.recordTime(operation.timerName, System.nanoTime() - start);
+
+			if (failed) {
+				registry.increment(operation.errorsName, 1);
+			}
+
+			if (event.shouldCommit()) {
+				event.operation = operation.operationName;
+				event.table = table;
+				event.recipeId = Objects.isNull(recipeId) ? 0 : recipeId;
+				event.rowCount = rowCount;
+				event.failed = failed;
+				event.commit();
+			}
+		}
+	}
+
+	private static void timedRun(Operation operation, String table, Integer recipeId, Runnable call,
+			LongSupplier rows) {
+		timed(operation, table, recipeId, () -> {
+			call.run();
+			return null;
+		}, Objects.isNull(rows) ? null : result -> rows.getAsLong());
+	}
+
+	// DbException usually wraps the SQLException that says what actually went wrong
+	private static String rootCauseName(Throwable e) {
+		Throwable cause = e;
+
+		while (Objects.nonNull(cause.getCause()) && cause.getCause() != cause) {
+			cause = cause.getCause();
+		}
+		return cause.getClass().getSimpleName();
+	}
+
+	private static long present(Optional<?> value) {
+		return value.isPresent() ? 1 : 0;
+	}
+
+} // end CLASS
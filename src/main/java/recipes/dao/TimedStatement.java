@@ -0,0 +1,175 @@
+package recipes.dao;
+
+import java.lang.System.Logger;
+import java.lang.System.Logger.Level;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Objects;
+
+import recipes.metrics.Metrics;
+
+/*
+ * Wraps the statements created by a pooled connection so every execution is
+ * timed (db.statement). The values bound to a prepared statement are
+ * remembered, and an execution that takes longer than the slow query threshold
+ * is counted (db.statement.slow) and logged at WARNING together with its SQL
+ * and parameters on the "recipes.dao.SlowQuery" System.Logger. Each execution
+ * is also a StatementEvent in a running flight recording.
+ */
+class TimedStatement implements InvocationHandler {
+	private static final Logger SLOW_QUERY_LOG = System.getLogger("recipes.dao.SlowQuery");
+
+	// longest parameter value written to the slow query log
+	private static final int MAX_LOGGED_VALUE_LENGTH = 100;
+
+	private final Statement statement;
+	private final Connection connection;
+	private final String sql;
+	private final long slowQueryNanos;
+	private Object[] parameters = new Object[0];
+
+	private TimedStatement(Statement statement, Connection connection, String sql, long slowQueryNanos) {
+		this.statement = statement;
+		this.connection = connection;
+		this.sql = sql;
+		this.slowQueryNanos = slowQueryNanos;
+	}
+
+	/*
+	 * Returns a proxy for a statement created by the connection method with the
+	 * given name and arguments. The proxy's getConnection() returns the pooled
+	 * connection, not the physical one.
+	 */
+	static Statement wrap(Statement statement, Connection connection, String methodName, Object[] args,
+			long slowQueryNanos) {
+		String sql = methodName.equals("createStatement") ? null : (String) args[0];
+		Class<?> type = statement instanceof CallableStatement ? CallableStatement.class
+				: statement instanceof PreparedStatement ? PreparedStatement.class : Statement.class;
+
+		return (Statement) Proxy.newProxyInstance(Statement.class.getClassLoader(), new Class<?>[] { type },
+				new TimedStatement(statement, connection, sql, slowQueryNanos));
+	}
+
+	@Override
+	public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+		String name = method.getName();
+
+		if (name.equals("getConnection")) {
+			return connection;
+		}
+
+		if (name.startsWith("set") && Objects.nonNull(args) && args.length >= 2 && args[0] instanceof Integer) {
+			remember((Integer) args[0], name.equals("setNull") ? null : args[1]);
+		} else if (name.equals("clearParameters")) {
+			parameters = new Object[0];
+		}
+
+		if (!name.startsWith("execute")) {
+			return invokeStatement(method, args);
+		}
+
+		StatementEvent event = new StatementEvent();
+		Object result = null;
+		long start = System.nanoTime();
+
+		event.begin();
+
+		try {
+			result = invokeStatement(method, args);
+			return result;
+		} finally {
+			long elapsed = System.nanoTime() - start;
+			String executedSql = Objects.nonNull(args) && args.length > 0 && args[0] instanceof String
+					? (String) args[0]
+					: sql;
+
+			if (event.shouldCommit()) {
+				event.sql = executedSql;
+				event.method = name;
+				event.updateCount = updateCount(result);
+				event.commit();
+			}
+
+			Metrics.registry().recordTime("db.statement", elapsed);
+
+			if (elapsed >= slowQueryNanos) {
+				Metrics.registry().increment("db.statement.slow", 1);
+				logSlowQuery(elapsed, executedSql);
+			}
+		}
+	}
+
+	private Object invokeStatement(Method method, Object[] args) throws Throwable {
+		try {
+			return method.invoke(statement, args);
+		} catch (InvocationTargetException e) {
+			throw e.getCause();
+		}
+	}
+
+	// The rows changed by executeUpdate() or executeBatch(); -1 for queries and failures
+	private static long updateCount(Object result) {
+		if (result instanceof Number) {
+			return ((Number) result).longValue();
+		}
+
+		long total = -1;
+
+		if (result instanceof int[]) {
+			total = 0;
+			for (int count : (int[]) result) {
+				total += Math.max(count, 0);
+			}
+		} else if (result instanceof long[]) {
+			total = 0;
+			for (long count : (long[]) result) {
+				total += Math.max(count, 0);
+			}
+		}
+		return total;
+	}
+
+	private void remember(int parameterIndex, Object value) {
+		if (parameterIndex < 1) {
+			return;
+		}
+
+		if (parameterIndex > parameters.length) {
+			parameters = Arrays.copyOf(parameters, Math.max(parameterIndex, parameters.length * 2));
+		}
+		parameters[parameterIndex - 1] = value;
+	}
+
+	private void logSlowQuery(long elapsedNanos, String executedSql) {
+		if (!SLOW_QUERY_LOG.isLoggable(Level.WARNING)) {
+			return;
+		}
+
+		StringBuilder message = new StringBuilder(256).append("Slow query (").append(elapsedNanos / 1_000_000)
+				.append(" ms): ").append(executedSql);
+
+		if (Objects.isNull(executedSql) || executedSql.equals(sql)) {
+			message.append(" parameters=[");
+
+			for (int index = 0; index < parameters.length; index++) {
+				String value = String.valueOf(parameters[index]);
+
+				if (value.length() > MAX_LOGGED_VALUE_LENGTH) {
+					value = value.substring(0, MAX_LOGGED_VALUE_LENGTH) + "...";
+				}
+				message.append(index == 0 ? "" : ", ").append(value);
+			}
+			message.append(']');
+		}
+
+		SLOW_QUERY_LOG.log(Level.WARNING, message.toString());
+	}
+
+} // end CLASS
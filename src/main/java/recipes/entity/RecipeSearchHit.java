@@ -0,0 +1,43 @@
+package recipes.entity;
+
+/*
+ * A recipe matched by a full-text search, with its relevance score. Higher
+ * scores are better matches.
+ */
+public class RecipeSearchHit {
+	private Integer recipeId;
+	private String recipeName;
+	private Double score;
+
+	// getters and setters
+	public Integer getRecipeId() {
+		return recipeId;
+	}
+
+	public void setRecipeId(Integer recipeId) {
+		this.recipeId = recipeId;
+	}
+
+	public String getRecipeName() {
+		return recipeName;
+	}
+
+	public void setRecipeName(String recipeName) {
+		this.recipeName = recipeName;
+	}
+
+	public Double getScore() {
+		return score;
+	}
+
+	public void setScore(Double score) {
+		this.score = score;
+	}
+
+	// toString()
+	@Override
+	public String toString() {
+		return "ID=" + recipeId + ", recipeName=" + recipeName + ", score=" + String.format("%.3f", score);
+	}
+
+} // end CLASS
@@ -0,0 +1,191 @@
+package recipes.entity;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+
+/*
+ * A compact, read-only list of recipe summaries for list screens. Instead of one
+ * object per recipe (each with its own lists) the values are stored column by
+ * column in primitive arrays, sorted by recipe ID. Category IDs for all recipes
+ * share one array; categoryStart[i] is where recipe i's categories begin and
+ * categoryStart[i + 1] is where they end.
+ *
+ * Use the indexed getters to read values without allocating, or get(index) /
+ * iteration for a RecipeSummary object per row.
+ */
+public class RecipeSummaries implements Iterable<RecipeSummary> {
+	private static final int NO_SERVINGS = Integer.MIN_VALUE;
+
+	private final int size;
+	private final int[] recipeIds;
+	private final String[] recipeNames;
+	private final int[] numServings;
+	private final int[] totalMinutes;
+	private final int[] categoryStart;
+	private final int[] categoryIds;
+
+	private RecipeSummaries(Builder builder) {
+		this.size = builder.size;
+		this.recipeIds = Arrays.copyOf(builder.recipeIds, size);
+		this.recipeNames = Arrays.copyOf(builder.recipeNames, size);
+		this.numServings = Arrays.copyOf(builder.numServings, size);
+		this.totalMinutes = Arrays.copyOf(builder.totalMinutes, size);
+		this.categoryIds = Arrays.copyOf(builder.categoryIds, builder.categoryCount);
+		this.categoryStart = new int[size + 1];
+
+		// Recipes with no categories start (and end) where the next recipe starts
+		int next = builder.categoryCount;
+		categoryStart[size] = next;
+
+		for (int index = size - 1; index >= 0; index--) {
+			if (builder.categoryStart[index] >= 0) {
+				next = builder.categoryStart[index];
+			}
+			categoryStart[index] = next;
+		}
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public int getRecipeId(int index) {
+		return recipeIds[checkIndex(index)];
+	}
+
+	public String getRecipeName(int index) {
+		return recipeNames[checkIndex(index)];
+	}
+
+	public Integer getNumServings(int index) {
+		int servings = numServings[checkIndex(index)];
+		return servings == NO_SERVINGS ? null : servings;
+	}
+
+	public int getTotalMinutes(int index) {
+		return totalMinutes[checkIndex(index)];
+	}
+
+	public int[] getCategoryIds(int index) {
+		checkIndex(index);
+		return Arrays.copyOfRange(categoryIds, categoryStart[index], categoryStart[index + 1]);
+	}
+
+	// Returns the position of the recipe or -1 if it isn't in the list
+	public int indexOf(Integer recipeId) {
+		if (Objects.isNull(recipeId)) {
+			return -1;
+		}
+
+		int index = Arrays.binarySearch(recipeIds, recipeId);
+		return index < 0 ? -1 : index;
+	}
+
+	public boolean contains(Integer recipeId) {
+		return indexOf(recipeId) >= 0;
+	}
+
+	public RecipeSummary get(int index) {
+		return new RecipeSummary(getRecipeId(index), getRecipeName(index), getNumServings(index),
+				getTotalMinutes(index), getCategoryIds(index));
+	}
+
+	@Override
+	public Iterator<RecipeSummary> iterator() {
+		return new Iterator<>() {
+			private int index;
+
+			@Override
+			public boolean hasNext() {
+				return index < size;
+			}
+
+			@Override
+			public RecipeSummary next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				return get(index++);
+			}
+		};
+	}
+
+	private int checkIndex(int index) {
+		return Objects.checkIndex(index, size);
+	}
+
+	/*
+	 * Collects the rows. Recipes must be added in ascending recipe ID order, and
+	 * categories grouped by recipe in the same order, which is what ORDER BY
+	 * recipe_id gives.
+	 */
+	public static class Builder {
+		private int size;
+		private int[] recipeIds = new int[64];
+		private String[] recipeNames = new String[64];
+		private int[] numServings = new int[64];
+		private int[] totalMinutes = new int[64];
+		private int[] categoryStart = new int[64];
+
+		private int categoryCount;
+		private int[] categoryIds = new int[64];
+		private int categoryCursor;
+
+		public Builder addRecipe(int recipeId, String recipeName, Integer servings, int minutes) {
+			if (size > 0 && recipeId <= recipeIds[size - 1]) {
+				throw new IllegalArgumentException("Recipes must be added in ascending ID order.");
+			}
+
+			if (size == recipeIds.length) {
+				int capacity = size * 2;
+				recipeIds = Arrays.copyOf(recipeIds, capacity);
+				recipeNames = Arrays.copyOf(recipeNames, capacity);
+				numServings = Arrays.copyOf(numServings, capacity);
+				totalMinutes = Arrays.copyOf(totalMinutes, capacity);
+				categoryStart = Arrays.copyOf(categoryStart, capacity);
+			}
+
+			recipeIds[size] = recipeId;
+			recipeNames[size] = recipeName;
+			numServings[size] = Objects.isNull(servings) ? NO_SERVINGS : servings;
+			totalMinutes[size] = minutes;
+			categoryStart[size] = -1;
+			size++;
+
+			return this;
+		}
+
+		// Categories of a recipe that isn't in the list are ignored
+		public Builder addCategory(int recipeId, int categoryId) {
+			while (categoryCursor < size && recipeIds[categoryCursor] < recipeId) {
+				categoryCursor++;
+			}
+
+			if (categoryCursor == size || recipeIds[categoryCursor] != recipeId) {
+				return this;
+			}
+
+			if (categoryStart[categoryCursor] < 0) {
+				categoryStart[categoryCursor] = categoryCount;
+			}
+
+			if (categoryCount == categoryIds.length) {
+				categoryIds = Arrays.copyOf(categoryIds, categoryCount * 2);
+			}
+			categoryIds[categoryCount++] = categoryId;
+
+			return this;
+		}
+
+		public RecipeSummaries build() {
+			return new RecipeSummaries(this);
+		}
+	}
+
+} // end CLASS
@@ -0,0 +1,53 @@
+package recipes.entity;
+
+import java.util.Arrays;
+
+/*
+ * One row of a RecipeSummaries list: just enough about a recipe for a list
+ * screen. Instances are created on demand by RecipeSummaries.get().
+ */
+public class RecipeSummary {
+	private final int recipeId;
+	private final String recipeName;
+	private final Integer numServings;
+	private final int totalMinutes;
+	private final int[] categoryIds;
+
+	RecipeSummary(int recipeId, String recipeName, Integer numServings, int totalMinutes, int[] categoryIds) {
+		this.recipeId = recipeId;
+		this.recipeName = recipeName;
+		this.numServings = numServings;
+		this.totalMinutes = totalMinutes;
+		this.categoryIds = categoryIds;
+	}
+
+	// getters
+	public int getRecipeId() {
+		return recipeId;
+	}
+
+	public String getRecipeName() {
+		return recipeName;
+	}
+
+	public Integer getNumServings() {
+		return numServings;
+	}
+
+	// prep time plus cook time
+	public int getTotalMinutes() {
+		return totalMinutes;
+	}
+
+	public int[] getCategoryIds() {
+		return categoryIds.clone();
+	}
+
+	// toString()
+	@Override
+	public String toString() {
+		return "ID=" + recipeId + ", recipeName=" + recipeName + ", numServings=" + numServings + ", totalMinutes="
+				+ totalMinutes + ", categoryIds=" + Arrays.toString(categoryIds);
+	}
+
+} // end CLASS
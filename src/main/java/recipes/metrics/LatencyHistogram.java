@@ -0,0 +1,106 @@
+package recipes.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * A lock-free latency histogram with log-linear buckets: every power of two is
+ * split into 8 equal buckets, so a percentile is reported with at most 12.5%
+ * error over the whole range from nanoseconds to days, in a fixed 4 KB of
+ * counters. Recording a value is a few arithmetic operations and one atomic
+ * increment.
+ *
+ * Percentiles are computed from the live counters, so a value recorded while
+ * they are being read may or may not be included.
+ */
+public class LatencyHistogram {
+	private static final int SUB_BUCKET_BITS = 3;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	private static final int BUCKETS = (Long.SIZE - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+	private final LongAdder count = new LongAdder();
+	private final LongAdder totalNanos = new LongAdder();
+	private final AtomicLong maxNanos = new AtomicLong();
+
+	public void record(long nanos) {
+		long value = Math.max(nanos, 0);
+
+		counts.incrementAndGet(bucketOf(value));
+		count.increment();
+		totalNanos.add(value);
+
+		long max = maxNanos.get();
+
+		while (value > max && !maxNanos.compareAndSet(max, value)) {
+			max = maxNanos.get();
+		}
+	}
+
+	public long getCount() {
+		return count.sum();
+	}
+
+	public long getTotalNanos() {
+		return totalNanos.sum();
+	}
+
+	public long getMaxNanos() {
+		return maxNanos.get();
+	}
+
+	/*
+	 * The value below which the given fraction (0.5 for the median, 0.99 for
+	 * p99) of the recorded values fall, rounded up to the top of its bucket and
+	 * never more than the maximum. Returns 0 if nothing has been recorded.
+	 */
+	public long getPercentileNanos(double fraction) {
+		long total = 0;
+
+		for (int bucket = 0; bucket < BUCKETS; bucket++) {
+			total += counts.get(bucket);
+		}
+
+		if (total == 0) {
+			return 0;
+		}
+
+		long rank = Math.max(1, (long) Math.ceil(fraction * total));
+		long seen = 0;
+
+		for (int bucket = 0; bucket < BUCKETS; bucket++) {
+			seen += counts.get(bucket);
+
+			if (seen >= rank) {
+				return Math.min(upperBoundOf(bucket), getMaxNanos());
+			}
+		}
+		return getMaxNanos();
+	}
+
+	// Values below SUB_BUCKETS get a bucket each; above that, 8 buckets per power of two
+	private static int bucketOf(long value) {
+		if (value < SUB_BUCKETS) {
+			return (int) value;
+		}
+
+		int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+		int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+
+		return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+	}
+
+	private static long upperBoundOf(int bucket) {
+		if (bucket < SUB_BUCKETS) {
+			return bucket;
+		}
+
+		int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+		long subBucket = bucket % SUB_BUCKETS;
+		long width = 1L << (exponent - SUB_BUCKET_BITS);
+
+		return (1L << exponent) + (subBucket + 1) * width - 1;
+	}
+
+} // end CLASS
@@ -0,0 +1,35 @@
+package recipes.metrics;
+
+import java.util.Objects;
+
+/*
+ * Holds the registry the DAO layer records to. It starts out as a
+ * SimpleMetricsRegistry; install another implementation at startup, before the
+ * first query, to send the measurements elsewhere.
+ *
+ * Metric names:
+ * - dao.<operation> (timer), dao.<operation>.rows and dao.<operation>.errors
+ *   (counters) for every RecipeDao operation
+ * - db.connection.acquire (timer) for borrowing a pooled connection
+ * - db.statement (timer) for every statement execution
+ * - db.transaction.commit and db.transaction.rollback (timers) from the start
+ *   of a transaction to its end
+ * - db.statement.slow (counter) for statements over the slow query threshold
+ * - db.error.<cause> (counter) for failed RecipeDao operations, by the simple
+ *   class name of the root cause (SQLTimeoutException, DbException, ...)
+ */
+public class Metrics {
+	private static volatile MetricsRegistry registry = new SimpleMetricsRegistry();
+
+	private Metrics() {
+	}
+
+	public static MetricsRegistry registry() {
+		return registry;
+	}
+
+	public static void setRegistry(MetricsRegistry newRegistry) {
+		registry = Objects.requireNonNull(newRegistry, "registry");
+	}
+
+} // end CLASS
@@ -0,0 +1,20 @@
+package recipes.metrics;
+
+/*
+ * Receives the timings and counts recorded by the DAO layer. The default
+ * implementation is SimpleMetricsRegistry; implement this interface to send the
+ * measurements to another metrics library instead, and install it with
+ * Metrics.setRegistry().
+ *
+ * Both methods are called on the query path, from many threads at once, so
+ * implementations must be thread-safe and cheap.
+ */
+public interface MetricsRegistry {
+
+	// Records one duration, in nanoseconds, of the named timer
+	void recordTime(String name, long nanos);
+
+	// Adds the amount to the named counter
+	void increment(String name, long amount);
+
+} // end INTERFACE
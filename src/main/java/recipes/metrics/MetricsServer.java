@@ -0,0 +1,107 @@
+package recipes.metrics;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import recipes.service.RecipeService;
+
+/*
+ * A small embedded HTTP server that answers GET /metrics with the output of a
+ * PrometheusExporter. It is started by the application only when the system
+ * property recipes.metrics.port is set (e.g. -Drecipes.metrics.port=9464).
+ * Scrapes are handled one at a time on a single daemon thread, which is all a
+ * scraper every few seconds needs and keeps the exporter's buffer unshared.
+ */
+public class MetricsServer implements AutoCloseable {
+	public static final String PORT_PROPERTY = "recipes.metrics.port";
+
+	private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+	private final HttpServer server;
+	private final ExecutorService executor;
+	private final PrometheusExporter exporter;
+
+	public MetricsServer(int port, RecipeService recipeService) {
+		this.exporter = new PrometheusExporter(recipeService);
+		this.executor = Executors.newSingleThreadExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "recipes-metrics");
+			thread.setDaemon(true);
+			return thread;
+		});
+
+		try {
+			server = HttpServer.create(new InetSocketAddress(port), 0);
+		} catch (IOException e) {
+			executor.shutdown();
+			throw new UncheckedIOException("Unable to start the metrics server on port " + port, e);
+		}
+
+		server.createContext("/metrics", this::handle);
+		server.setExecutor(executor);
+		server.start();
+	}
+
+	// Starts a server if recipes.metrics.port is set
+	public static Optional<MetricsServer> startIfConfigured(RecipeService recipeService) {
+		Integer port = Integer.getInteger(PORT_PROPERTY);
+
+		return Objects.isNull(port) ? Optional.empty() : Optional.of(new MetricsServer(port, recipeService));
+	}
+
+	public int getPort() {
+		return server.getAddress().getPort();
+	}
+
+	private void handle(HttpExchange exchange) throws IOException {
+		try (exchange) {
+			String method = exchange.getRequestMethod();
+
+			if (!method.equals("GET") && !method.equals("HEAD")) {
+				exchange.getResponseHeaders().set("Allow", "GET, HEAD");
+				exchange.sendResponseHeaders(405, -1);
+				return;
+			}
+
+			exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+
+			synchronized (exporter) {
+				int length;
+
+				try {
+					length = exporter.render();
+				} catch (RuntimeException e) {
+					System.out.println("\nMetrics scrape failed: " + e);
+					exchange.sendResponseHeaders(500, -1);
+					return;
+				}
+
+				if (method.equals("HEAD")) {
+					exchange.sendResponseHeaders(200, -1);
+					return;
+				}
+
+				exchange.sendResponseHeaders(200, length);
+
+				try (OutputStream body = exchange.getResponseBody()) {
+					body.write(exporter.getBuffer(), 0, length);
+				}
+			}
+		}
+	}
+
+	@Override
+	public void close() {
+		server.stop(0);
+		executor.shutdownNow();
+	}
+
+} // end CLASS
@@ -0,0 +1,336 @@
+package recipes.metrics;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.MemoryUsage;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+import recipes.dao.DbConnection;
+import recipes.dao.PoolStats;
+import recipes.service.CacheStats;
+import recipes.service.RecipeService;
+
+/*
+ * Renders the connection pool, recipe cache, DAO and JVM statistics in the
+ * Prometheus text exposition format (version 0.0.4).
+ *
+ * A scrape should not disturb the application, so the text is written as
+ * ASCII straight into a byte buffer that is reused from one scrape to the
+ * next; numbers are formatted in place rather than through String.valueOf()
+ * or String.format(). The buffer is only valid until the next render(), so
+ * callers that hand it out hold the exporter's lock while doing so (see
+ * MetricsServer).
+ *
+ * DAO and database timers and counters are only exported when the installed
+ * registry is a SimpleMetricsRegistry.
+ */
+public class PrometheusExporter {
+	private static final String[] QUANTILES = { "0.5", "0.9", "0.99" };
+	private static final double[] QUANTILE_VALUES = { 0.5, 0.9, 0.99 };
+	private static final long NANOS_PER_SECOND = 1_000_000_000L;
+
+	private final RecipeService recipeService;
+	private final List<GarbageCollectorMXBean> collectors = ManagementFactory.getGarbageCollectorMXBeans();
+	private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+	private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+	private byte[] buffer = new byte[16 * 1024];
+	private int size;
+
+	public PrometheusExporter(RecipeService recipeService) {
+		this.recipeService = recipeService;
+	}
+
+	/*
+	 * Renders all metrics into the internal buffer and returns its length. Read
+	 * the text with getBuffer() before calling render() again.
+	 */
+	public synchronized int render() {
+		size = 0;
+
+		renderPool(DbConnection.getPoolStats());
+		renderCache(recipeService.getCacheStats());
+
+		if (Metrics.registry() instanceof SimpleMetricsRegistry) {
+			renderRegistry((SimpleMetricsRegistry) Metrics.registry());
+		}
+
+		renderJvm();
+		return size;
+	}
+
+	// The buffer filled by the last render(); only the first render() bytes are valid
+	public synchronized byte[] getBuffer() {
+		return buffer;
+	}
+
+	private void renderPool(PoolStats stats) {
+		header("recipes_pool_connections", "gauge", "Pooled database connections by state");
+		sample("recipes_pool_connections", "state", "idle", stats.getIdle());
+		sample("recipes_pool_connections", "state", "active", stats.getActive());
+		sample("recipes_pool_connections", "state", "waiting", stats.getWaiting());
+
+		gauge("recipes_pool_max_connections", "Most connections the pool will open", stats.getMaxSize());
+		counter("recipes_pool_borrows_total", "Connections borrowed from the pool", stats.getBorrows());
+		counter("recipes_pool_acquire_timeouts_total", "Borrows that timed out waiting for a connection",
+				stats.getAcquireTimeouts());
+		counter("recipes_pool_connections_created_total", "Physical connections opened", stats.getCreated());
+		counter("recipes_pool_connections_destroyed_total", "Physical connections closed", stats.getDestroyed());
+		counter("recipes_pool_validation_failures_total", "Idle connections that failed validation",
+				stats.getValidationFailures());
+		counter("recipes_pool_leaks_detected_total", "Connections held longer than the leak threshold",
+				stats.getLeaksDetected());
+	}
+
+	private void renderCache(CacheStats stats) {
+		gauge("recipes_cache_entries", "Recipes in the recipe cache", stats.getSize());
+
+		header("recipes_cache_requests_total", "counter", "Recipe cache lookups by result");
+		sample("recipes_cache_requests_total", "result", "hit", stats.getHits());
+		sample("recipes_cache_requests_total", "result", "miss", stats.getMisses());
+
+		counter("recipes_cache_evictions_total", "Recipes evicted from the cache", stats.getEvictions());
+		counter("recipes_cache_invalidations_total", "Recipes invalidated by changes", stats.getInvalidations());
+	}
+
+	/*
+	 * Each family is written in its own pass over the registry, since the text
+	 * format requires the samples of a family to be contiguous.
+	 */
+	private void renderRegistry(SimpleMetricsRegistry registry) {
+		header("recipes_dao_operation_seconds", "summary", "Time spent in RecipeDao operations");
+		registry.forEachTimer((name, histogram) -> {
+			if (isDaoOperation(name)) {
+				summary("recipes_dao_operation_seconds", "operation", name.substring(4), histogram);
+			}
+		});
+
+		header("recipes_dao_rows_total", "counter", "Rows returned or written by RecipeDao operations");
+		registry.forEachCounter((name, value) -> {
+			if (name.startsWith("dao.") && name.endsWith(".rows")) {
+				sample("recipes_dao_rows_total", "operation", name.substring(4, name.length() - 5), value);
+			}
+		});
+
+		header("recipes_dao_errors_total", "counter", "Failed RecipeDao operations");
+		registry.forEachCounter((name, value) -> {
+			if (name.startsWith("dao.") && name.endsWith(".errors")) {
+				sample("recipes_dao_errors_total", "operation", name.substring(4, name.length() - 7), value);
+			}
+		});
+
+		header("recipes_db_errors_total", "counter", "Failed RecipeDao operations by root cause");
+		registry.forEachCounter((name, value) -> {
+			if (name.startsWith("db.error.")) {
+				sample("recipes_db_errors_total", "cause", name.substring(9), value);
+			}
+		});
+
+		header("recipes_db_transaction_seconds", "summary", "Transaction time from start to commit or rollback");
+		registry.forEachTimer((name, histogram) -> {
+			if (name.startsWith("db.transaction.")) {
+				summary("recipes_db_transaction_seconds", "outcome", name.substring(15), histogram);
+			}
+		});
+
+		singleSummary(registry, "db.connection.acquire", "recipes_db_connection_acquire_seconds",
+				"Time spent waiting for a pooled connection");
+		singleSummary(registry, "db.statement", "recipes_db_statement_seconds", "Statement execution time");
+
+		counter("recipes_db_slow_statements_total", "Statements slower than the slow query threshold",
+				registry.getCount("db.statement.slow"));
+	}
+
+	// dao.<operation> has no further dots; dao.<operation>.rows and .errors are counters
+	private static boolean isDaoOperation(String name) {
+		return name.startsWith("dao.") && name.indexOf('.', 4) < 0;
+	}
+
+	private void singleSummary(SimpleMetricsRegistry registry, String timerName, String family, String help) {
+		header(family, "summary", help);
+
+		LatencyHistogram histogram = registry.getTimer(timerName);
+
+		if (Objects.nonNull(histogram)) {
+			summary(family, null, null, histogram);
+		}
+	}
+
+	private void renderJvm() {
+		MemoryUsage heap = memory.getHeapMemoryUsage();
+		MemoryUsage nonHeap = memory.getNonHeapMemoryUsage();
+
+		header("jvm_memory_bytes_used", "gauge", "Used bytes of a JVM memory area");
+		sample("jvm_memory_bytes_used", "area", "heap", heap.getUsed());
+		sample("jvm_memory_bytes_used", "area", "nonheap", nonHeap.getUsed());
+
+		header("jvm_memory_bytes_committed", "gauge", "Committed bytes of a JVM memory area");
+		sample("jvm_memory_bytes_committed", "area", "heap", heap.getCommitted());
+		sample("jvm_memory_bytes_committed", "area", "nonheap", nonHeap.getCommitted());
+
+		header("jvm_gc_collection_seconds", "summary", "Time spent in a garbage collector");
+		for (GarbageCollectorMXBean collector : collectors) {
+			name("jvm_gc_collection_seconds_count", "gc", collector.getName(), null, null);
+			append(Math.max(collector.getCollectionCount(), 0)).append('\n');
+			name("jvm_gc_collection_seconds_sum", "gc", collector.getName(), null, null);
+			appendSeconds(Math.max(collector.getCollectionTime(), 0) * 1_000_000L).append('\n');
+		}
+
+		if (threads instanceof com.sun.management.ThreadMXBean) {
+			com.sun.management.ThreadMXBean allocation = (com.sun.management.ThreadMXBean) threads;
+
+			if (allocation.isThreadAllocatedMemorySupported() && allocation.isThreadAllocatedMemoryEnabled()) {
+				long allocated = 0;
+
+				for (long bytes : allocation.getThreadAllocatedBytes(threads.getAllThreadIds())) {
+					allocated += Math.max(bytes, 0);
+				}
+
+				// A gauge, not a counter: it drops when a thread ends
+				gauge("jvm_threads_allocated_bytes", "Bytes allocated so far by the live threads", allocated);
+			}
+		}
+
+		gauge("jvm_threads_current", "Live threads", threads.getThreadCount());
+	}
+
+	private void gauge(String family, String help, long value) {
+		header(family, "gauge", help);
+		sample(family, null, null, value);
+	}
+
+	private void counter(String family, String help, long value) {
+		header(family, "counter", help);
+		sample(family, null, null, value);
+	}
+
+	private void header(String family, String type, String help) {
+		append("# HELP ").append(family).append(' ').append(help).append('\n');
+		append("# TYPE ").append(family).append(' ').append(type).append('\n');
+	}
+
+	private void sample(String family, String label, String labelValue, long value) {
+		name(family, label, labelValue, null, null);
+		append(value).append('\n');
+	}
+
+	private void summary(String family, String label, String labelValue, LatencyHistogram histogram) {
+		for (int index = 0; index < QUANTILES.length; index++) {
+			name(family, label, labelValue, "quantile", QUANTILES[index]);
+			appendSeconds(histogram.getPercentileNanos(QUANTILE_VALUES[index])).append('\n');
+		}
+
+		append(family).append("_count");
+		labels(label, labelValue, null, null);
+		append(histogram.getCount()).append('\n');
+
+		append(family).append("_sum");
+		labels(label, labelValue, null, null);
+		appendSeconds(histogram.getTotalNanos()).append('\n');
+	}
+
+	private void name(String family, String label, String labelValue, String label2, String labelValue2) {
+		append(family);
+		labels(label, labelValue, label2, labelValue2);
+	}
+
+	private void labels(String label, String labelValue, String label2, String labelValue2) {
+		if (Objects.isNull(label) && Objects.isNull(label2)) {
+			append(' ');
+			return;
+		}
+
+		append('{');
+		if (Objects.nonNull(label)) {
+			append(label).append("=\"").appendEscaped(labelValue).append('"');
+		}
+		if (Objects.nonNull(label2)) {
+			append(Objects.isNull(label) ? "" : ",").append(label2).append("=\"").appendEscaped(labelValue2)
+					.append('"');
+		}
+		append("} ");
+	}
+
+	private PrometheusExporter append(char value) {
+		ensureCapacity(1);
+		buffer[size++] = (byte) (value < 128 ? value : '?');
+		return this;
+	}
+
+	private PrometheusExporter append(String value) {
+		ensureCapacity(value.length());
+
+		for (int index = 0; index < value.length(); index++) {
+			char ch = value.charAt(index);
+			buffer[size++] = (byte) (ch < 128 ? ch : '?');
+		}
+		return this;
+	}
+
+	// Label values escape backslash, double quote and line feed
+	private PrometheusExporter appendEscaped(String value) {
+		for (int index = 0; index < value.length(); index++) {
+			char ch = value.charAt(index);
+
+			if (ch == '\\' || ch == '"') {
+				append('\\').append(ch);
+			} else if (ch == '\n') {
+				append("\\n");
+			} else {
+				append(ch);
+			}
+		}
+		return this;
+	}
+
+	private PrometheusExporter append(long value) {
+		if (value == Long.MIN_VALUE) {
+			return append(Long.toString(value));
+		}
+
+		ensureCapacity(20);
+
+		if (value < 0) {
+			buffer[size++] = '-';
+			value = -value;
+		}
+
+		int start = size;
+
+		do {
+			buffer[size++] = (byte) ('0' + value % 10);
+			value /= 10;
+		} while (value > 0);
+
+		// The digits were written lowest first
+		for (int left = start, right = size - 1; left < right; left++, right--) {
+			byte digit = buffer[left];
+			buffer[left] = buffer[right];
+			buffer[right] = digit;
+		}
+		return this;
+	}
+
+	// Writes nanoseconds as seconds with nine decimals, e.g. 0.001500000
+	private PrometheusExporter appendSeconds(long nanos) {
+		append(nanos / NANOS_PER_SECOND).append('.');
+
+		long fraction = Math.abs(nanos % NANOS_PER_SECOND);
+
+		for (long digit = NANOS_PER_SECOND / 10; digit > 0; digit /= 10) {
+			append((char) ('0' + fraction / digit % 10));
+		}
+		return this;
+	}
+
+	private void ensureCapacity(int extra) {
+		if (size + extra > buffer.length) {
+			buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + extra));
+		}
+	}
+
+} // end CLASS
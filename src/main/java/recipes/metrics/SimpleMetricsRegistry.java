@@ -0,0 +1,76 @@
+package recipes.metrics;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.function.ObjLongConsumer;
+
+/*
+ * An in-memory registry: one LatencyHistogram per timer and one LongAdder per
+ * counter, created on first use. After the first recording of a name, recording
+ * is a hash lookup plus a lock-free update.
+ */
+public class SimpleMetricsRegistry implements MetricsRegistry {
+	private final ConcurrentMap<String, LatencyHistogram> timers = new ConcurrentHashMap<>();
+	private final ConcurrentMap<String, LongAdder> counters = new ConcurrentHashMap<>();
+
+	@Override
+	public void recordTime(String name, long nanos) {
+		LatencyHistogram histogram = timers.get(name);
+
+		if (Objects.isNull(histogram)) {
+			histogram = timers.computeIfAbsent(name, key -> new LatencyHistogram());
+		}
+		histogram.record(nanos);
+	}
+
+	@Override
+	public void increment(String name, long amount) {
+		LongAdder counter = counters.get(name);
+
+		if (Objects.isNull(counter)) {
+			counter = counters.computeIfAbsent(name, key -> new LongAdder());
+		}
+		counter.add(amount);
+	}
+
+	// Returns the timer with the given name or null if nothing has been recorded
+	public LatencyHistogram getTimer(String name) {
+		return timers.get(name);
+	}
+
+	// Returns the value of the counter, 0 if it has never been incremented
+	public long getCount(String name) {
+		LongAdder counter = counters.get(name);
+		return Objects.isNull(counter) ? 0 : counter.sum();
+	}
+
+	// Visits the live timers in no particular order, without copying them
+	public void forEachTimer(BiConsumer<String, LatencyHistogram> action) {
+		timers.forEach(action);
+	}
+
+	// Visits the current counter values in no particular order, without copying them
+	public void forEachCounter(ObjLongConsumer<String> action) {
+		counters.forEach((name, counter) -> action.accept(name, counter.sum()));
+	}
+
+	// The live timers, sorted by name
+	public Map<String, LatencyHistogram> getTimers() {
+		return Collections.unmodifiableMap(new TreeMap<>(timers));
+	}
+
+	// A snapshot of the counter values, sorted by name
+	public Map<String, Long> getCounters() {
+		Map<String, Long> values = new TreeMap<>();
+
+		counters.forEach((name, counter) -> values.put(name, counter.sum()));
+		return values;
+	}
+
+} // end CLASS
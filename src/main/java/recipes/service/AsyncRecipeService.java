@@ -0,0 +1,239 @@
+package recipes.service;
+
+import java.lang.reflect.Method;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import recipes.dao.DbConnection;
+import recipes.entity.Category;
+import recipes.entity.Ingredient;
+import recipes.entity.Recipe;
+import recipes.entity.RecipeSearchHit;
+import recipes.entity.RecipeSummaries;
+import recipes.entity.Step;
+import recipes.entity.Unit;
+
+/*
+ * A non-blocking facade over RecipeService. Every operation is run on an
+ * executor and returns a CompletableFuture, so callers can start several loads
+ * at once and compose the results:
+ *
+ *   try (AsyncRecipeService recipes = new AsyncRecipeService(new RecipeService())) {
+ *     recipes.fetchRecipeById(1).thenCombine(recipes.fetchRecipeById(2), List::of).join();
+ *   }
+ *
+ * By default each call runs on a virtual thread when the JVM supports them
+ * (Java 21 and later) and otherwise on a bounded pool with one thread per
+ * pooled connection, since that is the most JDBC work that can run at once.
+ * Calls that don't fit in the pool's queue fail with a
+ * RejectedExecutionException instead of blocking the caller.
+ *
+ * streamRecipes() has no async version: the stream holds a connection until it
+ * is closed, which has to happen on the thread that consumes it.
+ */
+public class AsyncRecipeService implements AutoCloseable {
+	// tasks waiting for a thread in the pool used before Java 21
+	private static final int QUEUE_CAPACITY = 1_000;
+	private static final long SHUTDOWN_TIMEOUT_SECONDS = 30;
+
+	private final RecipeService recipeService;
+	private final Executor executor;
+	private final ExecutorService ownedExecutor;
+
+	public AsyncRecipeService(RecipeService recipeService) {
+		this.recipeService = recipeService;
+		this.ownedExecutor = createExecutor();
+		this.executor = ownedExecutor;
+	}
+
+	// Runs the calls on the given executor, which is not shut down by close()
+	public AsyncRecipeService(RecipeService recipeService, Executor executor) {
+		this.recipeService = recipeService;
+		this.executor = executor;
+		this.ownedExecutor = null;
+	}
+
+	private static ExecutorService createExecutor() {
+		try {
+			Method virtual = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			return (ExecutorService) virtual.invoke(null);
+		} catch (ReflectiveOperationException e) {
+			// Before Java 21: fall through to a bounded pool of platform threads
+		}
+
+		int threads = DbConnection.getMaxPoolSize();
+		AtomicInteger count = new AtomicInteger();
+		ThreadFactory factory = runnable -> {
+			Thread thread = new Thread(runnable, "recipes-async-" + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		};
+
+		return new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<>(QUEUE_CAPACITY), factory);
+	}
+
+	private <T> CompletableFuture<T> supply(Supplier<T> operation) {
+		try {
+			return CompletableFuture.supplyAsync(operation, executor);
+		} catch (RejectedExecutionException e) {
+			return CompletableFuture.failedFuture(e);
+		}
+	}
+
+	private CompletableFuture<Void> run(Runnable operation) {
+		try {
+			return CompletableFuture.runAsync(operation, executor);
+		} catch (RejectedExecutionException e) {
+			return CompletableFuture.failedFuture(e);
+		}
+	}
+
+	// reads
+	public CompletableFuture<Recipe> fetchRecipeById(Integer recipeId) {
+		return supply(() -> recipeService.fetchRecipeById(recipeId));
+	}
+
+	public CompletableFuture<List<Recipe>> fetchRecipesByIds(Collection<Integer> recipeIds) {
+		return supply(() -> recipeService.fetchRecipesByIds(recipeIds));
+	}
+
+	// The consumer is called on the executor's thread
+	public CompletableFuture<Void> fetchAllRecipesWithChildren(Consumer<Recipe> consumer) {
+		return run(() -> recipeService.fetchAllRecipesWithChildren(consumer));
+	}
+
+	public CompletableFuture<List<Recipe>> fetchRecipes() {
+		return supply(recipeService::fetchRecipes);
+	}
+
+	public CompletableFuture<RecipeSummaries> fetchRecipeSummaries() {
+		return supply(recipeService::fetchRecipeSummaries);
+	}
+
+	public CompletableFuture<List<RecipeSearchHit>> searchRecipes(String query, int limit) {
+		return supply(() -> recipeService.searchRecipes(query, limit));
+	}
+
+	public CompletableFuture<List<Recipe>> fetchRecipePage(Integer afterRecipeId, int limit) {
+		return supply(() -> recipeService.fetchRecipePage(afterRecipeId, limit));
+	}
+
+	public CompletableFuture<List<Integer>> findRecipesUsingAll(Collection<String> ingredientNames) {
+		return supply(() -> recipeService.findRecipesUsingAll(ingredientNames));
+	}
+
+	public CompletableFuture<List<Integer>> findRecipesCookableWith(Collection<String> onHand, int maxMissing) {
+		return supply(() -> recipeService.findRecipesCookableWith(onHand, maxMissing));
+	}
+
+	public CompletableFuture<CategoryFacetResult> filterByCategories(Collection<String> categoryNames) {
+		return supply(() -> recipeService.filterByCategories(categoryNames));
+	}
+
+	public CompletableFuture<List<Unit>> fetchUnits() {
+		return supply(recipeService::fetchUnits);
+	}
+
+	public CompletableFuture<List<Category>> fetchCategories() {
+		return supply(recipeService::fetchCategories);
+	}
+
+	public CompletableFuture<List<Step>> fetchSteps(Integer recipeId) {
+		return supply(() -> recipeService.fetchSteps(recipeId));
+	}
+
+	// writes
+	public CompletableFuture<Recipe> addRecipe(Recipe recipe) {
+		return supply(() -> recipeService.addRecipe(recipe));
+	}
+
+	public CompletableFuture<Recipe> saveRecipe(Recipe recipe) {
+		return supply(() -> recipeService.saveRecipe(recipe));
+	}
+
+	public CompletableFuture<Void> addIngredient(Ingredient ingredient) {
+		return run(() -> recipeService.addIngredient(ingredient));
+	}
+
+	public CompletableFuture<Void> addIngredients(List<Ingredient> ingredients) {
+		return run(() -> recipeService.addIngredients(ingredients));
+	}
+
+	public CompletableFuture<Void> addStep(Step step) {
+		return run(() -> recipeService.addStep(step));
+	}
+
+	public CompletableFuture<Void> addSteps(List<Step> steps) {
+		return run(() -> recipeService.addSteps(steps));
+	}
+
+	public CompletableFuture<Void> reorderIngredients(Integer recipeId, List<Integer> ingredientIds) {
+		return run(() -> recipeService.reorderIngredients(recipeId, ingredientIds));
+	}
+
+	public CompletableFuture<Void> reorderSteps(Integer recipeId, List<Integer> stepIds) {
+		return run(() -> recipeService.reorderSteps(recipeId, stepIds));
+	}
+
+	public CompletableFuture<Void> addCategoryToRecipe(Integer recipeId, String category) {
+		return run(() -> recipeService.addCategoryToRecipe(recipeId, category));
+	}
+
+	public CompletableFuture<Void> modifyStep(Step step) {
+		return run(() -> recipeService.modifyStep(step));
+	}
+
+	public CompletableFuture<Void> deleteRecipe(Integer recipeId) {
+		return run(() -> recipeService.deleteRecipe(recipeId));
+	}
+
+	// schema and reference data
+	public CompletableFuture<Void> createAndPopulateTables() {
+		return run(recipeService::createAndPopulateTables);
+	}
+
+	public CompletableFuture<List<String>> migrateSchema() {
+		return supply(recipeService::migrateSchema);
+	}
+
+	public CompletableFuture<Void> refreshReferenceData() {
+		return run(recipeService::refreshReferenceData);
+	}
+
+	/*
+	 * Stops accepting calls and waits for the running ones to finish. An executor
+	 * passed to the constructor is left alone.
+	 */
+	@Override
+	public void close() {
+		if (Objects.isNull(ownedExecutor)) {
+			return;
+		}
+
+		ownedExecutor.shutdown();
+
+		try {
+			if (!ownedExecutor.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+				ownedExecutor.shutdownNow();
+			}
+		} catch (InterruptedException e) {
+			ownedExecutor.shutdownNow();
+			Thread.currentThread().interrupt();
+		}
+	}
+
+} // end CLASS
@@ -0,0 +1,62 @@
+package recipes.service;
+
+/*
+ * An immutable snapshot of the recipe cache counters. Obtain one from
+ * RecipeService.getCacheStats().
+ */
+public class CacheStats {
+	private final int size;
+	private final int maxSize;
+	private final long hits;
+	private final long misses;
+	private final long evictions;
+	private final long invalidations;
+
+	CacheStats(int size, int maxSize, long hits, long misses, long evictions, long invalidations) {
+		this.size = size;
+		this.maxSize = maxSize;
+		this.hits = hits;
+		this.misses = misses;
+		this.evictions = evictions;
+		this.invalidations = invalidations;
+	}
+
+	// getters
+	public int getSize() {
+		return size;
+	}
+
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	public long getHits() {
+		return hits;
+	}
+
+	public long getMisses() {
+		return misses;
+	}
+
+	public long getEvictions() {
+		return evictions;
+	}
+
+	public long getInvalidations() {
+		return invalidations;
+	}
+
+	public double getHitRatio() {
+		long requests = hits + misses;
+		return requests == 0 ? 0.0 : (double) hits / requests;
+	}
+
+	// toString()
+	@Override
+	public String toString() {
+		return "CacheStats [size=" + size + ", maxSize=" + maxSize + ", hits=" + hits + ", misses=" + misses
+				+ ", evictions=" + evictions + ", invalidations=" + invalidations + ", hitRatio="
+				+ String.format("%.2f", getHitRatio()) + "]";
+	}
+
+} // end CLASS
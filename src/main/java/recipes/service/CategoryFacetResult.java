@@ -0,0 +1,40 @@
+package recipes.service;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * The result of a faceted category filter: the IDs of the matching recipes, in
+ * ID order, and for each category the number of matching recipes that are also
+ * in that category. Obtain one from RecipeService.filterByCategories().
+ */
+public class CategoryFacetResult {
+	private final List<Integer> recipeIds;
+	private final Map<Integer, Integer> categoryCounts;
+
+	CategoryFacetResult(List<Integer> recipeIds, Map<Integer, Integer> categoryCounts) {
+		this.recipeIds = Collections.unmodifiableList(recipeIds);
+		this.categoryCounts = Collections.unmodifiableMap(categoryCounts);
+	}
+
+	// getters
+	public List<Integer> getRecipeIds() {
+		return recipeIds;
+	}
+
+	// Category ID to the number of matching recipes in that category
+	public Map<Integer, Integer> getCategoryCounts() {
+		return categoryCounts;
+	}
+
+	public int getCount(Integer categoryId) {
+		return categoryCounts.getOrDefault(categoryId, 0);
+	}
+
+	@Override
+	public String toString() {
+		return "CategoryFacetResult [recipes=" + recipeIds.size() + ", categoryCounts=" + categoryCounts + "]";
+	}
+
+} // end CLASS
@@ -0,0 +1,100 @@
+package recipes.service;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/*
+ * Per-category recipe-ID bitmaps for faceted browsing. Filtering by a set of
+ * categories is a bitwise AND of their bitmaps, and the count for every
+ * category within the remaining recipes is the cardinality of one more AND, so
+ * no GROUP BY over recipe_category is needed. All methods are synchronized.
+ */
+class CategoryFacets {
+	private final Map<Integer, BitSet> recipesByCategory = new HashMap<>();
+	private final BitSet recipes = new BitSet();
+
+	private boolean loading = true;
+	private final BitSet removedWhileLoading = new BitSet();
+
+	synchronized void addRecipe(int recipeId) {
+		recipes.set(recipeId);
+	}
+
+	synchronized void addCategory(int recipeId, int categoryId) {
+		recipes.set(recipeId);
+		recipesByCategory.computeIfAbsent(categoryId, key -> new BitSet()).set(recipeId);
+	}
+
+	synchronized void removeRecipe(int recipeId) {
+		recipes.clear(recipeId);
+
+		for (BitSet members : recipesByCategory.values()) {
+			members.clear(recipeId);
+		}
+
+		// The initial load may still return rows of this recipe; drop them again when it finishes
+		if (loading) {
+			removedWhileLoading.set(recipeId);
+		}
+	}
+
+	// Called once the initial load from the database is complete
+	synchronized void loaded() {
+		loading = false;
+
+		for (int recipeId = removedWhileLoading.nextSetBit(0); recipeId >= 0; recipeId = removedWhileLoading
+				.nextSetBit(recipeId + 1)) {
+			removeRecipe(recipeId);
+		}
+		removedWhileLoading.clear();
+	}
+
+	/*
+	 * Recipes in every one of the given categories (all recipes if there are none)
+	 * and, for each of countedCategoryIds, how many of those recipes are also in
+	 * that category.
+	 */
+	synchronized CategoryFacetResult filter(Collection<Integer> categoryIds, Collection<Integer> countedCategoryIds) {
+		BitSet matching = (BitSet) recipes.clone();
+
+		for (Integer categoryId : categoryIds) {
+			BitSet members = recipesByCategory.get(categoryId);
+
+			if (Objects.isNull(members)) {
+				matching.clear();
+				break;
+			}
+			matching.and(members);
+		}
+
+		List<Integer> recipeIds = new ArrayList<>(matching.cardinality());
+
+		for (int recipeId = matching.nextSetBit(0); recipeId >= 0; recipeId = matching.nextSetBit(recipeId + 1)) {
+			recipeIds.add(recipeId);
+		}
+
+		Map<Integer, Integer> counts = new HashMap<>();
+		BitSet scratch = new BitSet();
+
+		for (Integer categoryId : countedCategoryIds) {
+			BitSet members = recipesByCategory.get(categoryId);
+			int count = 0;
+
+			if (Objects.nonNull(members)) {
+				scratch.clear();
+				scratch.or(matching);
+				scratch.and(members);
+				count = scratch.cardinality();
+			}
+			counts.put(categoryId, count);
+		}
+
+		return new CategoryFacetResult(recipeIds, counts);
+	}
+
+} // end CLASS
@@ -0,0 +1,179 @@
+package recipes.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/*
+ * An in-memory index from ingredient name to the set of recipes that use it,
+ * for "what can I cook" queries. Each ingredient name maps to a BitSet with one
+ * bit per recipe ID, so "recipes that use all of these" is a bitwise AND and
+ * "recipes missing at most k ingredients" is a count over the on-hand sets,
+ * both without touching the database.
+ *
+ * Names are normalized (trimmed, lower case, single spaces) so "Green  Onion"
+ * and "green onion" are the same ingredient. All methods are synchronized.
+ */
+class IngredientIndex {
+	private final Map<String, BitSet> recipesByIngredient = new HashMap<>();
+	private final BitSet recipes = new BitSet();
+
+	// number of distinct ingredients of each recipe, indexed by recipe ID
+	private int[] ingredientCounts = new int[64];
+
+	private boolean loading = true;
+	private final BitSet removedWhileLoading = new BitSet();
+
+	synchronized void add(int recipeId, String ingredientName) {
+		String name = normalize(ingredientName);
+
+		if (name.isEmpty()) {
+			return;
+		}
+
+		BitSet users = recipesByIngredient.computeIfAbsent(name, key -> new BitSet());
+
+		if (!users.get(recipeId)) {
+			users.set(recipeId);
+			recipes.set(recipeId);
+
+			if (recipeId >= ingredientCounts.length) {
+				ingredientCounts = Arrays.copyOf(ingredientCounts, Math.max(recipeId + 1, ingredientCounts.length * 2));
+			}
+			ingredientCounts[recipeId]++;
+		}
+	}
+
+	synchronized void removeRecipe(int recipeId) {
+		if (!recipes.get(recipeId) && !loading) {
+			return;
+		}
+
+		for (BitSet users : recipesByIngredient.values()) {
+			users.clear(recipeId);
+		}
+
+		recipes.clear(recipeId);
+
+		if (recipeId < ingredientCounts.length) {
+			ingredientCounts[recipeId] = 0;
+		}
+
+		// The initial load may still return rows of this recipe; drop them again when it finishes
+		if (loading) {
+			removedWhileLoading.set(recipeId);
+		}
+	}
+
+	/*
+	 * Called once the initial load from the database is complete. Recipes deleted
+	 * while the load was running are removed again in case the load saw them.
+	 */
+	synchronized void loaded() {
+		loading = false;
+
+		for (int recipeId = removedWhileLoading.nextSetBit(0); recipeId >= 0; recipeId = removedWhileLoading
+				.nextSetBit(recipeId + 1)) {
+			removeRecipe(recipeId);
+		}
+		removedWhileLoading.clear();
+	}
+
+	// IDs of the recipes that use every one of the given ingredients, in ID order
+	synchronized List<Integer> recipesUsingAll(Collection<String> ingredientNames) {
+		Set<String> names = normalizeAll(ingredientNames);
+
+		if (names.isEmpty()) {
+			return List.of();
+		}
+
+		BitSet result = null;
+
+		for (String name : names) {
+			BitSet users = recipesByIngredient.get(name);
+
+			if (Objects.isNull(users)) {
+				return List.of();
+			}
+
+			if (Objects.isNull(result)) {
+				result = (BitSet) users.clone();
+			} else {
+				result.and(users);
+			}
+		}
+
+		return toList(result);
+	}
+
+	/*
+	 * IDs of the recipes that can be made with the ingredients on hand when at most
+	 * maxMissing of the recipe's ingredients are not on hand. With maxMissing = 0
+	 * every ingredient of the recipe must be on hand. Only recipes that use at least
+	 * one of the ingredients on hand are considered.
+	 */
+	synchronized List<Integer> recipesMissingAtMost(Collection<String> onHand, int maxMissing) {
+		// on-hand ingredients of each recipe, indexed by recipe ID like ingredientCounts
+		int[] matched = new int[ingredientCounts.length];
+		BitSet candidates = new BitSet();
+
+		for (String name : normalizeAll(onHand)) {
+			BitSet users = recipesByIngredient.get(name);
+
+			if (Objects.nonNull(users)) {
+				for (int recipeId = users.nextSetBit(0); recipeId >= 0; recipeId = users.nextSetBit(recipeId + 1)) {
+					matched[recipeId]++;
+				}
+				candidates.or(users);
+			}
+		}
+
+		BitSet result = new BitSet();
+
+		for (int recipeId = candidates.nextSetBit(0); recipeId >= 0; recipeId = candidates.nextSetBit(recipeId + 1)) {
+			if (ingredientCounts[recipeId] - matched[recipeId] <= maxMissing) {
+				result.set(recipeId);
+			}
+		}
+
+		return toList(result);
+	}
+
+	private List<Integer> toList(BitSet bits) {
+		List<Integer> ids = new ArrayList<>(bits.cardinality());
+
+		for (int recipeId = bits.nextSetBit(0); recipeId >= 0; recipeId = bits.nextSetBit(recipeId + 1)) {
+			ids.add(recipeId);
+		}
+		return ids;
+	}
+
+	private Set<String> normalizeAll(Collection<String> names) {
+		Set<String> normalized = new LinkedHashSet<>();
+
+		for (String name : names) {
+			String key = normalize(name);
+
+			if (!key.isEmpty()) {
+				normalized.add(key);
+			}
+		}
+		return normalized;
+	}
+
+	static String normalize(String name) {
+		if (Objects.isNull(name)) {
+			return "";
+		}
+		return name.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+	}
+
+} // end CLASS
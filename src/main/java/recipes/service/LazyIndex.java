@@ -0,0 +1,95 @@
+package recipes.service;
+
+import java.util.Objects;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/*
+ * Holds an in-memory index that is derived from the database, built on first
+ * use and then kept up to date by the service's write methods.
+ *
+ * While the index is being loaded it is already reachable through update(), so a
+ * write that commits after the load has started is either read by the load or
+ * applied to the new index directly. The index itself must therefore accept the
+ * same change twice.
+ *
+ * A reset() while a load is running makes that load's result stale, so the
+ * load is thrown away and run again instead of being published.
+ */
+class LazyIndex<T> {
+	private final Supplier<T> factory;
+	private final Consumer<T> loader;
+
+	private volatile T index;
+	private volatile T pending;
+
+	// Guards publishing a loaded index against a concurrent reset()
+	private final Object publishLock = new Object();
+	private long generation;
+
+	LazyIndex(Supplier<T> factory, Consumer<T> loader) {
+		this.factory = factory;
+		this.loader = loader;
+	}
+
+	T get() {
+		T current = index;
+
+		if (Objects.isNull(current)) {
+			current = load();
+		}
+		return current;
+	}
+
+	private synchronized T load() {
+		T loaded = index;
+
+		while (Objects.isNull(loaded)) {
+			long started;
+
+			synchronized (publishLock) {
+				started = generation;
+			}
+
+			T loading = factory.get();
+
+			pending = loading;
+
+			try {
+				loader.accept(loading);
+
+				synchronized (publishLock) {
+					if (generation == started) {
+						index = loading;
+						loaded = loading;
+					}
+				}
+			} finally {
+				pending = null;
+			}
+		}
+		return loaded;
+	}
+
+	// Applies a change to the index and to one that is being loaded, if there are any
+	void update(Consumer<T> change) {
+		T loading = pending;
+		T current = index;
+
+		if (Objects.nonNull(loading)) {
+			change.accept(loading);
+		}
+		if (Objects.nonNull(current) && current != loading) {
+			change.accept(current);
+		}
+	}
+
+	// Drops the index; it is rebuilt on next use
+	void reset() {
+		synchronized (publishLock) {
+			generation++;
+			index = null;
+		}
+	}
+
+} // end CLASS
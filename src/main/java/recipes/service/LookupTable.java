@@ -0,0 +1,66 @@
+package recipes.service;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+
+/*
+ * An immutable lookup table for small reference data such as units and
+ * categories. Rows are indexed by ID in an array (IDs are small auto-increment
+ * values) and by name in a hash map. Name lookups ignore case, matching the
+ * database collation. The rows themselves are shared and must not be modified.
+ */
+class LookupTable<T> {
+	private final Object[] byId;
+	private final Map<String, T> byName;
+	private final List<T> rows;
+
+	@SafeVarargs
+	LookupTable(List<T> rows, Function<T, Integer> idOf, Function<T, String>... namesOf) {
+		int maxId = 0;
+
+		for (T row : rows) {
+			maxId = Math.max(maxId, idOf.apply(row));
+		}
+
+		this.byId = new Object[maxId + 1];
+		this.byName = new HashMap<>(rows.size() * 2 * namesOf.length);
+		this.rows = Collections.unmodifiableList(rows);
+
+		for (T row : rows) {
+			byId[idOf.apply(row)] = row;
+
+			for (Function<T, String> nameOf : namesOf) {
+				String name = nameOf.apply(row);
+
+				if (Objects.nonNull(name)) {
+					byName.putIfAbsent(name.toLowerCase(Locale.ROOT), row);
+				}
+			}
+		}
+	}
+
+	// Returns the row with the given ID or null if there isn't one
+	@SuppressWarnings("unchecked")
+	T get(Integer id) {
+		if (Objects.isNull(id) || id < 0 || id >= byId.length) {
+			return null;
+		}
+		return (T) byId[id];
+	}
+
+	// Returns the row with the given name or null if there isn't one
+	T get(String name) {
+		return Objects.isNull(name) ? null : byName.get(name.trim().toLowerCase(Locale.ROOT));
+	}
+
+	// All rows in the order they were loaded
+	List<T> all() {
+		return rows;
+	}
+
+} // end CLASS
@@ -0,0 +1,103 @@
+package recipes.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Objects;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import recipes.exception.DbException;
+
+/*
+ * A schema migration script from the classpath, named V<version>__<description>.sql.
+ * The script is split into statements with SqlScriptReader, and the checksum is
+ * the SHA-256 of those statements, so editing comments or whitespace doesn't
+ * change it but editing any statement does.
+ */
+class Migration {
+	private static final Pattern FILE_NAME = Pattern.compile("(?:.*/)?V(\\d+)__(\\w+)\\.sql");
+
+	private final int version;
+	private final String description;
+	private final String fileName;
+	private final List<String> statements;
+	private final String checksum;
+
+	private Migration(int version, String description, String fileName, List<String> statements, String checksum) {
+		this.version = version;
+		this.description = description;
+		this.fileName = fileName;
+		this.statements = statements;
+		this.checksum = checksum;
+	}
+
+	static Migration load(String fileName) {
+		Matcher name = FILE_NAME.matcher(fileName);
+
+		if (!name.matches()) {
+			throw new DbException("Migration file " + fileName + " is not named V<version>__<description>.sql");
+		}
+
+		InputStream in = Migration.class.getClassLoader().getResourceAsStream(fileName);
+
+		if (Objects.isNull(in)) {
+			throw new DbException("Unable to find " + fileName + " on the classpath.");
+		}
+
+		List<String> statements = new ArrayList<>();
+		MessageDigest digest = sha256();
+
+		try (SqlScriptReader reader = new SqlScriptReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+			while (reader.hasNext()) {
+				String statement = reader.next();
+
+				statements.add(statement);
+				digest.update((statement + ";\n").getBytes(StandardCharsets.UTF_8));
+			}
+		} catch (IOException e) {
+			throw new DbException(e);
+		}
+
+		return new Migration(Integer.parseInt(name.group(1)), name.group(2).replace('_', ' '), fileName,
+				Collections.unmodifiableList(statements), HexFormat.of().formatHex(digest.digest()));
+	}
+
+	private static MessageDigest sha256() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			// Every Java platform is required to support SHA-256
+			throw new IllegalStateException(e);
+		}
+	}
+
+	// getters
+	int getVersion() {
+		return version;
+	}
+
+	String getDescription() {
+		return description;
+	}
+
+	String getFileName() {
+		return fileName;
+	}
+
+	List<String> getStatements() {
+		return statements;
+	}
+
+	String getChecksum() {
+		return checksum;
+	}
+
+} // end CLASS
@@ -0,0 +1,121 @@
+package recipes.service;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Predicate;
+
+import recipes.entity.Recipe;
+
+/*
+ * A bounded, in-process cache of complete Recipe aggregates keyed by recipe ID.
+ * Entries are evicted least-recently-used once maxEntries is exceeded and are
+ * treated as missing once they are older than the time-to-live. All methods are
+ * synchronized; the work done under the lock is a hash lookup.
+ *
+ * Every invalidation bumps a generation counter. A caller that loads a recipe
+ * from the database takes the generation first and passes it to put(), which
+ * drops the value if anything was invalidated in the meantime. That keeps a slow
+ * read from re-caching a recipe that was modified while it was being loaded.
+ */
+class RecipeCache {
+	private final int maxEntries;
+	private final long ttlNanos;
+	private final Map<Integer, Entry> entries;
+
+	private long generation;
+	private long hits;
+	private long misses;
+	private long evictions;
+	private long invalidations;
+
+	RecipeCache(int maxEntries, long ttlMillis) {
+		this.maxEntries = maxEntries;
+		this.ttlNanos = ttlMillis * 1_000_000L;
+
+		// access-ordered so the eldest entry is the least recently used
+		this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Integer, Entry> eldest) {
+				if (size() > RecipeCache.this.maxEntries) {
+					evictions++;
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	synchronized Recipe get(Integer recipeId) {
+		Entry entry = entries.get(recipeId);
+
+		if (Objects.isNull(entry)) {
+			misses++;
+			return null;
+		}
+
+		if (System.nanoTime() - entry.loadedAt > ttlNanos) {
+			entries.remove(recipeId);
+			evictions++;
+			misses++;
+			return null;
+		}
+
+		hits++;
+		return entry.recipe;
+	}
+
+	synchronized long generation() {
+		return generation;
+	}
+
+	// Caches the recipe unless something was invalidated after the generation was taken
+	synchronized void put(Recipe recipe, long loadedGeneration) {
+		if (loadedGeneration == generation) {
+			entries.put(recipe.getRecipeId(), new Entry(recipe, System.nanoTime()));
+		}
+	}
+
+	synchronized void invalidate(Integer recipeId) {
+		generation++;
+
+		if (Objects.nonNull(entries.remove(recipeId))) {
+			invalidations++;
+		}
+	}
+
+	synchronized void invalidateIf(Predicate<Recipe> predicate) {
+		generation++;
+
+		for (Iterator<Entry> it = entries.values().iterator(); it.hasNext();) {
+			if (predicate.test(it.next().recipe)) {
+				it.remove();
+				invalidations++;
+			}
+		}
+	}
+
+	synchronized void clear() {
+		generation++;
+		invalidations += entries.size();
+		entries.clear();
+	}
+
+	synchronized CacheStats getStats() {
+		return new CacheStats(entries.size(), maxEntries, hits, misses, evictions, invalidations);
+	}
+
+	private static class Entry {
+		private final Recipe recipe;
+		private final long loadedAt;
+
+		Entry(Recipe recipe, long loadedAt) {
+			this.recipe = recipe;
+			this.loadedAt = loadedAt;
+		}
+	}
+
+} // end CLASS
@@ -1,19 +1,31 @@
 package recipes.service;
 
 import java.io.IOException;
-import java.net.URISyntaxException;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.util.LinkedList;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import recipes.dao.RecipeDao;
+import recipes.dao.TimedRecipeDao;
 import recipes.entity.Category;
 import recipes.entity.Ingredient;
 import recipes.entity.Recipe;
+import recipes.entity.RecipeSearchHit;
+import recipes.entity.RecipeSummaries;
 import recipes.entity.Step;
 import recipes.entity.Unit;
 import recipes.exception.DbException;
@@ -22,123 +34,429 @@ public class RecipeService {
 	private static final String SCHEMA_FILE = "recipe_schema.sql";
 	private static final String DATA_FILE = "recipe_data.sql";
 
-	private RecipeDao recipeDao = new RecipeDao();
+	// schema migrations in version order; recipe_schema.sql creates the schema of all of them
+	// @formatter:off
+	private static final List<String> MIGRATION_FILES = List.of(
+		"db/migration/V1__initial_schema.sql",
+		"db/migration/V2__child_table_indexes.sql",
+		"db/migration/V3__fulltext_indexes.sql"
+	);
+	// @formatter:on
 
+	// number of INSERT statements sent to the database per batch when loading a script
+	private static final int SCRIPT_BATCH_SIZE = 1_000;
+
+	// recipe cache settings
+	private static final int CACHE_MAX_RECIPES = 256;
+	private static final long CACHE_TTL_MILLIS = 300_000;
+
+	private RecipeDao recipeDao = new TimedRecipeDao();
+	private RecipeCache recipeCache = new RecipeCache(CACHE_MAX_RECIPES, CACHE_TTL_MILLIS);
+
+	// reference data, loaded on first use and replaced by refreshReferenceData()
+	private volatile LookupTable<Unit> units;
+	private volatile LookupTable<Category> categories;
+
+	// in-memory indexes, built on first use and kept up to date by the write methods
+	private final LazyIndex<IngredientIndex> ingredientIndex = new LazyIndex<>(IngredientIndex::new, index -> {
+		recipeDao.fetchIngredientNames(index::add);
+		index.loaded();
+	});
+	private final LazyIndex<CategoryFacets> categoryFacets = new LazyIndex<>(CategoryFacets::new, facets -> {
+		recipeDao.fetchRecipeCategoryIds((recipeId, categoryId) -> {
+			if (Objects.isNull(categoryId)) {
+				facets.addRecipe(recipeId);
+			} else {
+				facets.addCategory(recipeId, categoryId);
+			}
+		});
+		facets.loaded();
+	});
+
+	/*
+	 * Read-through: a cached recipe is returned if there is one, otherwise the
+	 * recipe is loaded and cached. Cached recipes are shared, so callers must not
+	 * modify the returned object; writes go through this service, which
+	 * invalidates the affected recipe.
+	 */
 	public Recipe fetchRecipeById(Integer recipeId) {
-		return recipeDao.fetchRecipeById(recipeId)
-				.orElseThrow(() -> new NoSuchElementException("Recipe with ID=" + recipeId + " does not exist."));
+		return fetchCachedRecipe(recipeId, recipeDao::fetchRecipeById);
+	}
+
+	/*
+	 * Like fetchRecipeById(Integer), but on a cache miss the ingredients and steps
+	 * are loaded concurrently on their own connections using the executor (see
+	 * RecipeDao.fetchRecipeById(Integer, Executor)). Worth it for recipes with
+	 * many children; the executor must not be one whose threads are all busy
+	 * waiting on this call.
+	 */
+	public Recipe fetchRecipeById(Integer recipeId, Executor executor) {
+		return fetchCachedRecipe(recipeId, id -> recipeDao.fetchRecipeById(id, executor));
+	}
+
+	private Recipe fetchCachedRecipe(Integer recipeId, Function<Integer, Optional<Recipe>> loader) {
+		Recipe recipe = recipeCache.get(recipeId);
+
+		if (Objects.isNull(recipe)) {
+			long generation = recipeCache.generation();
+
+			recipe = loader.apply(recipeId)
+					.orElseThrow(() -> new NoSuchElementException("Recipe with ID=" + recipeId + " does not exist."));
+			recipeCache.put(recipe, generation);
+		}
+		return recipe;
+	}
+
+	public CacheStats getCacheStats() {
+		return recipeCache.getStats();
+	}
+
+	// Loads complete recipes for all of the given IDs with a handful of queries
+	public List<Recipe> fetchRecipesByIds(Collection<Integer> recipeIds) {
+		return recipeDao.fetchRecipesByIds(recipeIds);
+	}
+
+	// Streams every recipe, with its children, to the consumer in recipe ID order
+	public void fetchAllRecipesWithChildren(Consumer<Recipe> consumer) {
+		recipeDao.fetchAllRecipesWithChildren(consumer);
 	}
 
 	public void createAndPopulateTables() {
+		recipeCache.clear();
+		ingredientIndex.reset();
+		categoryFacets.reset();
 		loadFromFile(SCHEMA_FILE);
 		loadFromFile(DATA_FILE);
+		refreshReferenceData();
 	}
 
-	private void loadFromFile(String fileName) {
-		String content = readFileContent(fileName);
-		List<String> sqlStatements = convertContentToSqlStatements(content);
+	/*
+	 * Brings an existing database up to the current schema without dropping any
+	 * data, instead of recreating it like createAndPopulateTables() does.
+	 *
+	 * - The checksums of migrations that have already been applied are compared
+	 *   with the scripts first; nothing is run if an applied script has been
+	 *   changed. Migrations recorded without a checksum get one.
+	 * - Each new migration runs in its own transaction together with the row
+	 *   that records it (see RecipeDao.applyMigration for DDL and chunked data
+	 *   migrations).
+	 * - A database lock keeps two instances from migrating at the same time.
+	 *
+	 * Returns the file names of the migrations that were applied.
+	 */
+	public synchronized List<String> migrateSchema() {
+		List<Migration> migrations = new ArrayList<>(MIGRATION_FILES.size());
 
-		recipeDao.executeBatch(sqlStatements);
-	}
+		for (String fileName : MIGRATION_FILES) {
+			migrations.add(Migration.load(fileName));
+		}
 
-	private List<String> convertContentToSqlStatements(String content) {
-		content = removeComments(content);
-		content = replaceWhitespaceSequencesWithSingleSpace(content);
+		List<String> migrated = recipeDao.withMigrationLock(() -> {
+			Map<Integer, String> applied = recipeDao.fetchAppliedMigrations();
+			Set<Integer> known = new HashSet<>();
 
-		return extractLinesFromContent(content);
-	}
+			for (Migration migration : migrations) {
+				known.add(migration.getVersion());
 
-	private List<String> extractLinesFromContent(String content) {
-		List<String> lines = new LinkedList<>();
+				String checksum = applied.get(migration.getVersion());
 
-		while (!content.isEmpty()) {
-			int semicolon = content.indexOf(";");
+				if (Objects.nonNull(checksum) && !checksum.equals(migration.getChecksum())) {
+					throw new DbException("Migration " + migration.getFileName()
+							+ " has been changed since it was applied. Add a new migration instead.");
+				}
+			}
 
-			if (semicolon == -1) { // index of -1 means last line (no line feed)
-				if (!content.isBlank()) {
-					lines.add(content);
+			for (Integer version : applied.keySet()) {
+				if (!known.contains(version)) {
+					throw new DbException("The database has migration version " + version
+							+ ", which is newer than this application.");
+				}
+			}
+
+			List<String> fileNames = new ArrayList<>();
+
+			for (Migration migration : migrations) {
+				if (!applied.containsKey(migration.getVersion())) {
+					recipeDao.applyMigration(migration.getVersion(), migration.getDescription(),
+							migration.getChecksum(), migration.getStatements());
+					fileNames.add(migration.getFileName());
+				} else if (Objects.isNull(applied.get(migration.getVersion()))) {
+					recipeDao.updateMigrationChecksum(migration.getVersion(), migration.getChecksum());
 				}
-				content = "";
-			} else {
-				lines.add(content.substring(0, semicolon).trim());
-				content = content.substring(semicolon + 1);
 			}
+			return fileNames;
+		});
+
+		if (!migrated.isEmpty()) {
+			recipeCache.clear();
+			ingredientIndex.reset();
+			categoryFacets.reset();
+			refreshReferenceData();
 		}
-		return lines;
+		return migrated;
 	}
 
-	private String replaceWhitespaceSequencesWithSingleSpace(String content) {
-		return content.replaceAll("\\s+", " "); // \s is a regular expression (regex) for whitespace. Have to double
-												// backslash because
-												// backslash is an escape character
+	/*
+	 * Reloads the unit and category tables. Units and categories are only read
+	 * from the database here, so call this after changing them outside of the
+	 * application.
+	 */
+	public synchronized void refreshReferenceData() {
+		units = new LookupTable<>(recipeDao.fetchAllUnits(), Unit::getUnitId, Unit::getUnitNameSingular,
+				Unit::getUnitNamePlural);
+		categories = new LookupTable<>(recipeDao.fetchAllCategories(), Category::getCategoryId,
+				Category::getCategoryName);
 	}
 
-	private String removeComments(String content) {
-		StringBuilder builder = new StringBuilder(content);
-		// keep track of comment position
-		int commentPos = 0;
+	private LookupTable<Unit> units() {
+		if (Objects.isNull(units)) {
+			loadReferenceData();
+		}
+		return units;
+	}
 
-		while ((commentPos = builder.indexOf("-- ", commentPos)) != -1) {
-			int eolPos = builder.indexOf("\n", commentPos + 1);
+	private LookupTable<Category> categories() {
+		if (Objects.isNull(categories)) {
+			loadReferenceData();
+		}
+		return categories;
+	}
 
-			if (eolPos == -1) {
-				builder.replace(commentPos, builder.length(), "");
-			} else {
-				builder.replace(commentPos, eolPos + 1, "");
+	private synchronized void loadReferenceData() {
+		if (Objects.isNull(units) || Objects.isNull(categories)) {
+			refreshReferenceData();
+		}
+	}
+
+	// IDs of the recipes that use every one of the given ingredients, in ID order
+	public List<Integer> findRecipesUsingAll(Collection<String> ingredientNames) {
+		return ingredientIndex.get().recipesUsingAll(ingredientNames);
+	}
+
+	/*
+	 * IDs of the recipes that can be cooked with the ingredients on hand when at
+	 * most maxMissing of their ingredients are not on hand, in ID order. Answered
+	 * from the in-memory ingredient index without querying the database.
+	 */
+	public List<Integer> findRecipesCookableWith(Collection<String> onHand, int maxMissing) {
+		if (maxMissing < 0) {
+			throw new IllegalArgumentException("Missing ingredient count must not be negative but was " + maxMissing);
+		}
+		return ingredientIndex.get().recipesMissingAtMost(onHand, maxMissing);
+	}
+
+	/*
+	 * Recipes in every one of the given categories (all recipes if none are given)
+	 * and the number of those recipes in each category, for faceted browsing.
+	 * Answered from in-memory category bitmaps without querying the database.
+	 */
+	public CategoryFacetResult filterByCategories(Collection<String> categoryNames) {
+		List<Integer> categoryIds = new ArrayList<>(categoryNames.size());
+
+		for (String name : categoryNames) {
+			Category category = categories().get(name);
+
+			if (Objects.isNull(category)) {
+				throw new DbException("Category " + name + " does not exist.");
 			}
+			categoryIds.add(category.getCategoryId());
 		}
-		return builder.toString();
 
+		List<Integer> countedIds = categories().all().stream().map(Category::getCategoryId)
+				.collect(Collectors.toList());
+
+		return categoryFacets.get().filter(categoryIds, countedIds);
 	}
 
-	private String readFileContent(String fileName) {
-		try {
-			Path path = Paths.get(getClass().getClassLoader().getResource(fileName).toURI());
-			return Files.readString(path);
-		} catch (Exception e) {
+	/*
+	 * Streams the script from the classpath through SqlScriptReader, so the file is
+	 * parsed in one pass and never held in memory as a whole.
+	 */
+	private void loadFromFile(String fileName) {
+		InputStream in = getClass().getClassLoader().getResourceAsStream(fileName);
+
+		if (Objects.isNull(in)) {
+			throw new DbException("Unable to find " + fileName + " on the classpath.");
+		}
+
+		try (SqlScriptReader statements = new SqlScriptReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+			recipeDao.executeScript(statements, SCRIPT_BATCH_SIZE);
+		} catch (IOException e) {
 			throw new DbException(e);
 		}
 	}
 
 	public Recipe addRecipe(Recipe recipe) {
-		return recipeDao.insertRecipe(recipe);
+		Recipe added = recipeDao.insertRecipe(recipe);
+
+		categoryFacets.update(facets -> facets.addRecipe(added.getRecipeId()));
+		return added;
+	}
+
+	/*
+	 * Saves a new recipe together with its ingredients, steps and categories in
+	 * a single transaction, so a failure never leaves part of a recipe behind.
+	 * Units are resolved by ID and categories by ID or name, as in addIngredient
+	 * and addCategoryToRecipe; the recipe's category list itself is left as it
+	 * is. Returns the recipe with all generated IDs set.
+	 */
+	public Recipe saveRecipe(Recipe recipe) {
+		recipe.getIngredients().forEach(this::resolveUnit);
+
+		List<Category> categories = new ArrayList<>(recipe.getCategories().size());
+
+		for (Category category : recipe.getCategories()) {
+			categories.add(resolveCategory(category));
+		}
+
+		Recipe saved = recipeDao.saveRecipe(recipe, categories);
+		Integer recipeId = saved.getRecipeId();
+
+		ingredientIndex.update(index -> saved.getIngredients()
+				.forEach(ingredient -> index.add(recipeId, ingredient.getIngredientName())));
+		categoryFacets.update(facets -> {
+			facets.addRecipe(recipeId);
+			categories.forEach(category -> facets.addCategory(recipeId, category.getCategoryId()));
+		});
+		return saved;
+	}
+
+	// Returns the category from the category table with the same ID, or else the same name
+	private Category resolveCategory(Category category) {
+		if (Objects.nonNull(category.getCategoryId())) {
+			Category resolved = categories().get(category.getCategoryId());
+
+			if (Objects.isNull(resolved)) {
+				throw new DbException("Category with ID=" + category.getCategoryId() + " does not exist.");
+			}
+			return resolved;
+		}
+
+		Category resolved = categories().get(category.getCategoryName());
+
+		if (Objects.isNull(resolved)) {
+			throw new DbException("Category " + category.getCategoryName() + " does not exist.");
+		}
+		return resolved;
 	}
 
 	/*
-	 * Modified to use Stream to sort recipes by ID
-	 * 
-	 * OLD = 	public List<Recipe> fetchRecipes() {
-	 * 				return recipeDao.fetchAllRecipes();
-	 * 			} // end fetchRecipes
-	 *  NEW:
+	 * Recipes are returned sorted by ID. The database streams them in ID order, so
+	 * there is no sort in Java, and the notes column isn't loaded since list views
+	 * don't show it.
 	 */
 	public List<Recipe> fetchRecipes() {
-		// @formatter:off
-		return recipeDao.fetchAllRecipes()
-			.stream()
-			.sorted((r1, r2) -> r1.getRecipeId() - r2.getRecipeId())
-			.collect(Collectors.toList());		
-		// @formatter:on
+		try (Stream<Recipe> recipes = recipeDao.streamRecipes()) {
+			return recipes.collect(Collectors.toList());
+		}
 	} // end fetchRecipes
 
+	// ID, name, servings, total time and category IDs of every recipe, sorted by ID
+	public RecipeSummaries fetchRecipeSummaries() {
+		return recipeDao.fetchRecipeSummaries();
+	}
+
+	// Ranked full-text search over recipe names, notes, ingredients and steps
+	public List<RecipeSearchHit> searchRecipes(String query, int limit) {
+		if (Objects.isNull(query) || query.isBlank()) {
+			throw new IllegalArgumentException("A search needs at least one word.");
+		}
+		return recipeDao.searchRecipes(query.trim(), limit);
+	}
+
+	// Returns the next page of up to limit recipes after the given recipe ID (0 for the first page)
+	public List<Recipe> fetchRecipePage(Integer afterRecipeId, int limit) {
+		if (limit < 1) {
+			throw new IllegalArgumentException("Page size must be at least 1 but was " + limit);
+		}
+		return recipeDao.fetchRecipePage(Objects.isNull(afterRecipeId) ? 0 : afterRecipeId, limit);
+	}
+
+	// Streams every recipe (without notes) in ID order. The stream must be closed.
+	public Stream<Recipe> streamRecipes() {
+		return recipeDao.streamRecipes();
+	}
+
 	public List<Unit> fetchUnits() {
-		return recipeDao.fetchAllUnits();
+		return units().all();
 	} // end fetchUnits
 
 	public void addIngredient(Ingredient ingredient) {
+		resolveUnit(ingredient);
 		recipeDao.addIngredientToRecipe(ingredient);
+		recipeCache.invalidate(ingredient.getRecipeId());
+		ingredientIndex.update(index -> index.add(ingredient.getRecipeId(), ingredient.getIngredientName()));
 	}
 
 	public void addStep(Step step) {
 		recipeDao.addStepToRecipe(step);
+		recipeCache.invalidate(step.getRecipeId());
+	}
+
+	// Adds many ingredients with one batched INSERT in a single transaction
+	public void addIngredients(List<Ingredient> ingredients) {
+		ingredients.forEach(this::resolveUnit);
+		recipeDao.addIngredients(ingredients);
+		ingredients.forEach(ingredient -> recipeCache.invalidate(ingredient.getRecipeId()));
+		ingredientIndex.update(index -> ingredients
+				.forEach(ingredient -> index.add(ingredient.getRecipeId(), ingredient.getIngredientName())));
+	}
+
+	// Renumbers the recipe's ingredients in the order of the given ingredient IDs
+	public void reorderIngredients(Integer recipeId, List<Integer> ingredientIds) {
+		boolean reordered = recipeDao.reorderIngredients(recipeId, ingredientIds);
+		recipeCache.invalidate(recipeId);
+
+		if (!reordered) {
+			throw new DbException("Ingredient IDs " + ingredientIds + " are not the ingredients of recipe with ID="
+					+ recipeId + ".");
+		}
+	}
+
+	// Renumbers the recipe's steps in the order of the given step IDs
+	public void reorderSteps(Integer recipeId, List<Integer> stepIds) {
+		boolean reordered = recipeDao.reorderSteps(recipeId, stepIds);
+		recipeCache.invalidate(recipeId);
+
+		if (!reordered) {
+			throw new DbException("Step IDs " + stepIds + " are not the steps of recipe with ID=" + recipeId + ".");
+		}
+	}
+
+	// Adds many steps with one batched INSERT in a single transaction
+	public void addSteps(List<Step> steps) {
+		recipeDao.addSteps(steps);
+		steps.forEach(step -> recipeCache.invalidate(step.getRecipeId()));
+	}
+
+	// Replaces the ingredient's unit with the full unit from the unit table
+	private void resolveUnit(Ingredient ingredient) {
+		Unit unit = ingredient.getUnit();
+
+		if (Objects.nonNull(unit) && Objects.nonNull(unit.getUnitId())) {
+			Unit resolved = units().get(unit.getUnitId());
+
+			if (Objects.isNull(resolved)) {
+				throw new DbException("Unit with ID=" + unit.getUnitId() + " does not exist.");
+			}
+			ingredient.setUnit(resolved);
+		}
 	}
 
 	public List<Category> fetchCategories() {
-		return recipeDao.fetchAllCategories();
+		return categories().all();
 	} // end fetchCategories
 
 	public void addCategoryToRecipe(Integer recipeId, String category) {
-		recipeDao.addCategoryToRecipe(recipeId, category);
+		Category resolved = categories().get(category);
+
+		if (Objects.isNull(resolved)) {
+			throw new DbException("Category " + category + " does not exist.");
+		}
+
+		recipeDao.addCategoryToRecipe(recipeId, resolved.getCategoryId());
+		recipeCache.invalidate(recipeId);
+		categoryFacets.update(facets -> facets.addCategory(recipeId, resolved.getCategoryId()));
 	}
 
 	public List<Step> fetchSteps(Integer recipeId) {
@@ -154,12 +472,24 @@ public class RecipeService {
 		if (!recipeDao.modifyRecipeStep(step)) {
 			throw new DbException("Step with ID=" + step.getStepId() + "  does not exist.");
 		}
+
+		// The update is keyed by step ID only, so also drop any cached recipe that holds the step
+		recipeCache.invalidateIf(recipe -> recipe.getRecipeId().equals(step.getRecipeId()) || recipe.getSteps()
+				.stream().anyMatch(cached -> step.getStepId().equals(cached.getStepId())));
 	}
 
 	public void deleteRecipe(Integer recipeId) {
-		if (!recipeDao.deleteRecipe(recipeId)) {
+		// Invalidate after the DELETE commits so a concurrent load can't cache the old row again
+		boolean deleted = recipeDao.deleteRecipe(recipeId);
+		recipeCache.invalidate(recipeId);
+
+		if (!deleted) {
 			throw new DbException("Recipe with ID=" + recipeId + " does not exist.");
 		}
+
+		// The recipe's ingredients and categories were removed by ON DELETE CASCADE
+		ingredientIndex.update(index -> index.removeRecipe(recipeId));
+		categoryFacets.update(facets -> facets.removeRecipe(recipeId));
 	} // end deleteRecipe
 
 } // end CLASS
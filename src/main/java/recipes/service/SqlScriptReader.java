@@ -0,0 +1,207 @@
+package recipes.service;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+
+import recipes.exception.DbException;
+
+/*
+ * Splits a SQL script into statements while reading it, one character at a
+ * time, so the whole file is never held in memory and the work is linear in the
+ * size of the script.
+ *
+ * - Statements end at a semicolon that is not inside a quoted string or
+ *   identifier ('...', "..." or `...`).
+ * - Backslash escapes and doubled quote characters inside quotes are honored.
+ * - "-- " and "#" line comments and C-style block comments are removed. MySQL
+ *   executable comments (the ones starting with slash-star-bang) are kept as
+ *   part of the statement.
+ * - Runs of whitespace outside of quotes become a single space. Text inside
+ *   quotes is left exactly as written.
+ */
+public class SqlScriptReader implements Iterator<String>, Closeable {
+	private static final int EOF = -1;
+	private static final int NONE = -2;
+
+	private final Reader reader;
+	private final StringBuilder statement = new StringBuilder(256);
+	private int peeked = NONE;
+	private String next;
+
+	public SqlScriptReader(Reader reader) {
+		this.reader = reader instanceof BufferedReader ? reader : new BufferedReader(reader);
+	}
+
+	@Override
+	public boolean hasNext() {
+		if (Objects.isNull(next)) {
+			try {
+				next = readStatement();
+			} catch (IOException e) {
+				throw new DbException(e);
+			}
+		}
+		return Objects.nonNull(next);
+	}
+
+	@Override
+	public String next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+
+		String result = next;
+		next = null;
+		return result;
+	}
+
+	@Override
+	public void close() throws IOException {
+		reader.close();
+	}
+
+	// Returns the next non-empty statement without its semicolon, or null at the end of the script
+	private String readStatement() throws IOException {
+		statement.setLength(0);
+		int ch;
+
+		while ((ch = read()) != EOF) {
+			if (ch == ';') {
+				String sql = trimmed();
+
+				if (!sql.isEmpty()) {
+					return sql;
+				}
+				continue;
+			}
+
+			if (ch == '\'' || ch == '"' || ch == '`') {
+				readQuoted(ch);
+			} else if (ch == '-' && peek() == '-') {
+				read();
+				int after = peek();
+
+				// MySQL only treats "--" as a comment when followed by whitespace or the end of the line
+				if (after == EOF || Character.isWhitespace(after)) {
+					skipLine();
+					appendSpace();
+				} else {
+					statement.append("--");
+				}
+			} else if (ch == '#') {
+				skipLine();
+				appendSpace();
+			} else if (ch == '/' && peek() == '*') {
+				read();
+
+				if (peek() == '!') {
+					statement.append("/*");
+					readExecutableComment();
+				} else {
+					skipBlockComment();
+					appendSpace();
+				}
+			} else if (Character.isWhitespace(ch)) {
+				appendSpace();
+			} else {
+				statement.append((char) ch);
+			}
+		}
+
+		// A final statement does not need a semicolon
+		String sql = trimmed();
+		return sql.isEmpty() ? null : sql;
+	}
+
+	private void readQuoted(int quote) throws IOException {
+		statement.append((char) quote);
+		int ch;
+
+		while ((ch = read()) != EOF) {
+			statement.append((char) ch);
+
+			if (ch == '\\' && quote != '`') {
+				int escaped = read();
+
+				if (escaped != EOF) {
+					statement.append((char) escaped);
+				}
+			} else if (ch == quote) {
+				// A doubled quote is an escaped quote, not the end of the string
+				if (peek() == quote) {
+					statement.append((char) read());
+				} else {
+					return;
+				}
+			}
+		}
+	}
+
+	private void readExecutableComment() throws IOException {
+		int ch;
+
+		while ((ch = read()) != EOF) {
+			statement.append((char) ch);
+
+			if (ch == '*' && peek() == '/') {
+				statement.append((char) read());
+				return;
+			}
+		}
+	}
+
+	private void skipBlockComment() throws IOException {
+		int ch;
+
+		while ((ch = read()) != EOF) {
+			if (ch == '*' && peek() == '/') {
+				read();
+				return;
+			}
+		}
+	}
+
+	private void skipLine() throws IOException {
+		int ch;
+
+		while ((ch = read()) != EOF && ch != '\n') {
+			// skip
+		}
+	}
+
+	private void appendSpace() {
+		int length = statement.length();
+
+		if (length > 0 && statement.charAt(length - 1) != ' ') {
+			statement.append(' ');
+		}
+	}
+
+	private String trimmed() {
+		String sql = statement.toString().trim();
+		statement.setLength(0);
+		return sql;
+	}
+
+	private int read() throws IOException {
+		if (peeked != NONE) {
+			int ch = peeked;
+			peeked = NONE;
+			return ch;
+		}
+		return reader.read();
+	}
+
+	private int peek() throws IOException {
+		if (peeked == NONE) {
+			peeked = reader.read();
+		}
+		return peeked;
+	}
+
+} // end CLASS
@@ -0,0 +1,78 @@
+-- Composite indexes for the child table lookups, which filter by recipe_id and
+-- sort by the order column, and a unique category name.
+--
+-- Categories with the same name (under the column's collation) are merged into
+-- the one with the lowest ID first, so the unique key can be added: their recipe
+-- links move to that category, and links a recipe already has to it are dropped
+-- with the duplicate (ON DELETE CASCADE).
+--
+-- Orders are renumbered 1..n per recipe (keeping their relative order), since
+-- older versions could assign the same order twice under concurrency. The
+-- renumbering runs in chunks of recipe IDs so each transaction only locks the
+-- rows of a few recipes; running it again gives the same result.
+--
+-- The single-column recipe_id indexes that MySQL created for the foreign keys
+-- are redundant once the composite keys exist, and recipe_schema.sql doesn't
+-- have them, so they are dropped where present.
+
+UPDATE IGNORE recipe_category rc
+JOIN category c ON c.category_id = rc.category_id
+JOIN (
+  SELECT category_name, MIN(category_id) AS keep_id
+  FROM category
+  GROUP BY category_name
+  HAVING COUNT(*) > 1
+) k ON k.category_name = c.category_name
+SET rc.category_id = k.keep_id
+WHERE rc.category_id <> k.keep_id;
+
+DELETE c
+FROM category c
+JOIN (
+  SELECT category_name, MIN(category_id) AS keep_id
+  FROM category
+  GROUP BY category_name
+) k ON k.category_name = c.category_name
+WHERE c.category_id <> k.keep_id;
+
+CHUNK BY recipe.recipe_id SIZE 1000;
+UPDATE ingredient i
+JOIN (
+  SELECT ingredient_id,
+    ROW_NUMBER() OVER (PARTITION BY recipe_id ORDER BY ingredient_order, ingredient_id) AS new_order
+  FROM ingredient
+  WHERE recipe_id BETWEEN ? AND ?
+) o USING (ingredient_id)
+SET i.ingredient_order = o.new_order;
+
+CHUNK BY recipe.recipe_id SIZE 1000;
+UPDATE step s
+JOIN (
+  SELECT step_id,
+    ROW_NUMBER() OVER (PARTITION BY recipe_id ORDER BY step_order, step_id) AS new_order
+  FROM step
+  WHERE recipe_id BETWEEN ? AND ?
+) o USING (step_id)
+SET s.step_order = o.new_order;
+
+ALTER TABLE category ADD UNIQUE KEY category_name (category_name);
+ALTER TABLE ingredient ADD UNIQUE KEY ingredient_recipe_order (recipe_id, ingredient_order);
+ALTER TABLE step ADD UNIQUE KEY step_recipe_order (recipe_id, step_order);
+
+SET @drop_index = (
+  SELECT IF(COUNT(*) > 0, 'ALTER TABLE ingredient DROP INDEX recipe_id', 'DO 0')
+  FROM information_schema.statistics
+  WHERE table_schema = DATABASE() AND table_name = 'ingredient' AND index_name = 'recipe_id'
+);
+PREPARE drop_index FROM @drop_index;
+EXECUTE drop_index;
+DEALLOCATE PREPARE drop_index;
+
+SET @drop_index = (
+  SELECT IF(COUNT(*) > 0, 'ALTER TABLE step DROP INDEX recipe_id', 'DO 0')
+  FROM information_schema.statistics
+  WHERE table_schema = DATABASE() AND table_name = 'step' AND index_name = 'recipe_id'
+);
+PREPARE drop_index FROM @drop_index;
+EXECUTE drop_index;
+DEALLOCATE PREPARE drop_index;
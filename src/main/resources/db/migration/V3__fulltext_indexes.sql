@@ -0,0 +1,5 @@
+-- FULLTEXT indexes used by the recipe search.
+
+ALTER TABLE recipe ADD FULLTEXT KEY recipe_text (recipe_name, notes);
+ALTER TABLE step ADD FULLTEXT KEY step_text (step_text);
+ALTER TABLE ingredient ADD FULLTEXT KEY ingredient_name (ingredient_name);
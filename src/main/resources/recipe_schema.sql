@@ -1,3 +1,4 @@
+DROP TABLE IF EXISTS schema_migration;
 DROP TABLE IF EXISTS ingredient;
 DROP TABLE IF EXISTS step;
 DROP TABLE IF EXISTS recipe_category;
@@ -13,13 +14,15 @@ CREATE TABLE recipe (
   prep_time TIME,
   cook_time TIME,
   created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
-  PRIMARY KEY (recipe_id)
+  PRIMARY KEY (recipe_id),
+  FULLTEXT KEY recipe_text (recipe_name, notes)
 );
 
 CREATE TABLE category (
   category_id INT AUTO_INCREMENT NOT NULL,
   category_name VARCHAR(64) NOT NULL,
-  PRIMARY KEY (category_id)
+  PRIMARY KEY (category_id),
+  UNIQUE KEY category_name (category_name)
 );
 
 CREATE TABLE unit (
@@ -43,6 +46,8 @@ CREATE TABLE step (
   step_order INT NOT NULL,
   step_text TEXT NOT NULL,
   PRIMARY KEY (step_id),
+  UNIQUE KEY step_recipe_order (recipe_id, step_order),
+  FULLTEXT KEY step_text (step_text),
   FOREIGN KEY (recipe_id) REFERENCES recipe (recipe_id) ON DELETE CASCADE
 );
 
@@ -55,6 +60,23 @@ CREATE TABLE ingredient (
   ingredient_order INT NOT NULL,
   amount DECIMAL(7, 2),
   PRIMARY KEY (ingredient_id),
+  UNIQUE KEY ingredient_recipe_order (recipe_id, ingredient_order),
+  FULLTEXT KEY ingredient_name (ingredient_name),
   FOREIGN KEY (recipe_id) REFERENCES recipe (recipe_id) ON DELETE CASCADE,
   FOREIGN KEY (unit_id) REFERENCES unit (unit_id)
-);
\ No newline at end of file
+);
+
+-- Schema version: this file creates the schema of every migration in db/migration.
+-- The checksums are filled in by the migration runner on its first run.
+CREATE TABLE schema_migration (
+  version INT NOT NULL,
+  description VARCHAR(128) NOT NULL,
+  checksum CHAR(64),
+  applied_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  execution_ms BIGINT,
+  PRIMARY KEY (version)
+);
+
+INSERT INTO schema_migration (version, description) VALUES (1, 'initial schema');
+INSERT INTO schema_migration (version, description) VALUES (2, 'child table indexes');
+INSERT INTO schema_migration (version, description) VALUES (3, 'fulltext indexes');
@@ -0,0 +1,143 @@
+package recipes.entity;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class RecipeSummariesTest {
+
+	@Test
+	void keepsTheValuesOfEveryRecipe() {
+		RecipeSummaries summaries = new RecipeSummaries.Builder()
+				.addRecipe(3, "Pancakes", 4, 20)
+				.addRecipe(7, "Toast", null, 5)
+				.build();
+
+		assertEquals(2, summaries.size());
+		assertFalse(summaries.isEmpty());
+		assertEquals(7, summaries.getRecipeId(1));
+		assertEquals("Pancakes", summaries.getRecipeName(0));
+		assertEquals(4, summaries.getNumServings(0));
+		assertNull(summaries.getNumServings(1));
+		assertEquals(5, summaries.getTotalMinutes(1));
+	}
+
+	@Test
+	void categoriesBelongToTheirRecipe() {
+		RecipeSummaries summaries = new RecipeSummaries.Builder()
+				.addRecipe(1, "a", 1, 1)
+				.addRecipe(2, "b", 1, 1)
+				.addRecipe(3, "c", 1, 1)
+				.addRecipe(4, "d", 1, 1)
+				.addCategory(1, 10)
+				.addCategory(1, 11)
+				.addCategory(3, 12)
+				.build();
+
+		assertArrayEquals(new int[] { 10, 11 }, summaries.getCategoryIds(0));
+		assertArrayEquals(new int[] {}, summaries.getCategoryIds(1));
+		assertArrayEquals(new int[] { 12 }, summaries.getCategoryIds(2));
+		assertArrayEquals(new int[] {}, summaries.getCategoryIds(3));
+	}
+
+	@Test
+	void categoriesOfUnknownRecipesAreIgnored() {
+		RecipeSummaries summaries = new RecipeSummaries.Builder()
+				.addRecipe(2, "b", 1, 1)
+				.addRecipe(4, "d", 1, 1)
+				.addCategory(1, 10)
+				.addCategory(2, 20)
+				.addCategory(3, 30)
+				.addCategory(4, 40)
+				.addCategory(5, 50)
+				.build();
+
+		assertArrayEquals(new int[] { 20 }, summaries.getCategoryIds(0));
+		assertArrayEquals(new int[] { 40 }, summaries.getCategoryIds(1));
+	}
+
+	@Test
+	void growsPastTheInitialCapacity() {
+		RecipeSummaries.Builder builder = new RecipeSummaries.Builder();
+
+		for (int recipeId = 1; recipeId <= 200; recipeId++) {
+			builder.addRecipe(recipeId, "r" + recipeId, recipeId, recipeId);
+		}
+		for (int recipeId = 1; recipeId <= 200; recipeId++) {
+			builder.addCategory(recipeId, recipeId * 10);
+		}
+
+		RecipeSummaries summaries = builder.build();
+
+		assertEquals(200, summaries.size());
+		assertEquals("r150", summaries.getRecipeName(149));
+		assertArrayEquals(new int[] { 2000 }, summaries.getCategoryIds(199));
+	}
+
+	@Test
+	void recipesMustBeAddedInAscendingIdOrder() {
+		RecipeSummaries.Builder builder = new RecipeSummaries.Builder().addRecipe(5, "e", 1, 1);
+
+		assertThrows(IllegalArgumentException.class, () -> builder.addRecipe(5, "e", 1, 1));
+		assertThrows(IllegalArgumentException.class, () -> builder.addRecipe(4, "d", 1, 1));
+	}
+
+	@Test
+	void indexOfFindsRecipesById() {
+		RecipeSummaries summaries = new RecipeSummaries.Builder()
+				.addRecipe(3, "c", 1, 1)
+				.addRecipe(8, "h", 1, 1)
+				.build();
+
+		assertEquals(1, summaries.indexOf(8));
+		assertEquals(-1, summaries.indexOf(5));
+		assertEquals(-1, summaries.indexOf(null));
+		assertTrue(summaries.contains(3));
+		assertFalse(summaries.contains(4));
+	}
+
+	@Test
+	void indexOutOfRangeIsRejected() {
+		RecipeSummaries summaries = new RecipeSummaries.Builder().addRecipe(1, "a", 1, 1).build();
+
+		assertThrows(IndexOutOfBoundsException.class, () -> summaries.getRecipeId(1));
+		assertThrows(IndexOutOfBoundsException.class, () -> summaries.getCategoryIds(-1));
+	}
+
+	@Test
+	void iteratesInRecipeIdOrder() {
+		RecipeSummaries summaries = new RecipeSummaries.Builder()
+				.addRecipe(1, "a", 2, 10)
+				.addRecipe(2, "b", null, 20)
+				.addCategory(2, 7)
+				.build();
+
+		List<RecipeSummary> rows = new ArrayList<>();
+		summaries.forEach(rows::add);
+
+		assertEquals(2, rows.size());
+		assertEquals(1, rows.get(0).getRecipeId());
+		assertEquals(2, rows.get(0).getNumServings());
+		assertEquals("b", rows.get(1).getRecipeName());
+		assertNull(rows.get(1).getNumServings());
+		assertEquals(20, rows.get(1).getTotalMinutes());
+		assertArrayEquals(new int[] { 7 }, rows.get(1).getCategoryIds());
+	}
+
+	@Test
+	void emptyList() {
+		RecipeSummaries summaries = new RecipeSummaries.Builder().build();
+
+		assertTrue(summaries.isEmpty());
+		assertFalse(summaries.iterator().hasNext());
+	}
+
+} // end CLASS
@@ -0,0 +1,101 @@
+package recipes.metrics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class LatencyHistogramTest {
+
+	@Test
+	void emptyHistogramReportsZero() {
+		LatencyHistogram histogram = new LatencyHistogram();
+
+		assertEquals(0, histogram.getCount());
+		assertEquals(0, histogram.getTotalNanos());
+		assertEquals(0, histogram.getMaxNanos());
+		assertEquals(0, histogram.getPercentileNanos(0.5));
+	}
+
+	@Test
+	void tracksCountTotalAndMax() {
+		LatencyHistogram histogram = new LatencyHistogram();
+
+		histogram.record(5);
+		histogram.record(1_000);
+		histogram.record(20);
+
+		assertEquals(3, histogram.getCount());
+		assertEquals(1_025, histogram.getTotalNanos());
+		assertEquals(1_000, histogram.getMaxNanos());
+	}
+
+	@Test
+	void negativeValuesAreRecordedAsZero() {
+		LatencyHistogram histogram = new LatencyHistogram();
+
+		histogram.record(-10);
+
+		assertEquals(1, histogram.getCount());
+		assertEquals(0, histogram.getTotalNanos());
+		assertEquals(0, histogram.getPercentileNanos(1.0));
+	}
+
+	@Test
+	void smallValuesAreExact() {
+		for (long value = 0; value < 16; value++) {
+			LatencyHistogram histogram = new LatencyHistogram();
+
+			histogram.record(value);
+			histogram.record(1_000_000);
+
+			assertEquals(value, histogram.getPercentileNanos(0.5));
+		}
+	}
+
+	@Test
+	void percentileIsTheTopOfItsBucket() {
+		LatencyHistogram histogram = new LatencyHistogram();
+
+		for (long value = 1; value <= 100; value++) {
+			histogram.record(value);
+		}
+
+		// 50 falls in [48, 51], the fifth of eight buckets between 32 and 63
+		assertEquals(51, histogram.getPercentileNanos(0.5));
+		// 90 falls in [88, 95]
+		assertEquals(95, histogram.getPercentileNanos(0.9));
+		// 100 falls in [96, 103], capped at the maximum
+		assertEquals(100, histogram.getPercentileNanos(1.0));
+		assertEquals(1, histogram.getPercentileNanos(0.0));
+	}
+
+	@Test
+	void percentileErrorIsAtMostOneEighth() {
+		Random random = new Random(42);
+
+		for (int trial = 0; trial < 10_000; trial++) {
+			long value = 16 + (random.nextLong() >>> (1 + random.nextInt(62)));
+			LatencyHistogram histogram = new LatencyHistogram();
+
+			histogram.record(value);
+			histogram.record(Long.MAX_VALUE);
+
+			long reported = histogram.getPercentileNanos(0.5);
+
+			assertTrue(reported >= value && reported - value <= value / 8, value + " reported as " + reported);
+		}
+	}
+
+	@Test
+	void largestValueHasABucket() {
+		LatencyHistogram histogram = new LatencyHistogram();
+
+		histogram.record(Long.MAX_VALUE);
+
+		assertEquals(Long.MAX_VALUE, histogram.getPercentileNanos(0.99));
+	}
+
+} // end CLASS
@@ -0,0 +1,117 @@
+package recipes.metrics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import recipes.service.RecipeService;
+
+class PrometheusExporterTest {
+	private MetricsRegistry previous;
+	private SimpleMetricsRegistry registry;
+	private PrometheusExporter exporter;
+
+	@BeforeEach
+	void setUp() {
+		previous = Metrics.registry();
+		registry = new SimpleMetricsRegistry();
+		Metrics.setRegistry(registry);
+		exporter = new PrometheusExporter(new RecipeService());
+	}
+
+	@AfterEach
+	void tearDown() {
+		Metrics.setRegistry(previous);
+	}
+
+	@Test
+	void everyFamilyHasHelpAndTypeAndEveryLineEndsWithANewline() {
+		String text = render();
+
+		assertTrue(text.endsWith("\n"));
+		assertTrue(text.contains("# HELP recipes_pool_connections Pooled database connections by state\n"
+				+ "# TYPE recipes_pool_connections gauge\n"));
+		assertTrue(text.contains("# TYPE recipes_cache_requests_total counter\n"));
+		assertTrue(text.contains("# TYPE recipes_dao_operation_seconds summary\n"));
+		assertTrue(text.contains("# TYPE jvm_threads_current gauge\n"));
+
+		for (String line : text.split("\n")) {
+			assertTrue(line.startsWith("# ") || line.matches("[a-z_]+(\\{.*\\})? -?[0-9.]+"), line);
+		}
+	}
+
+	@Test
+	void daoTimersAreSummariesInSeconds() {
+		// The top of a histogram bucket, so the median is reported exactly
+		registry.recordTime("dao.fetchRecipe", 1_572_863);
+		registry.recordTime("dao.fetchRecipe", 2_000_000_000L);
+
+		String text = render();
+
+		assertTrue(text.contains("recipes_dao_operation_seconds{operation=\"fetchRecipe\",quantile=\"0.5\"} "
+				+ "0.001572863\n"));
+		assertTrue(text.contains("recipes_dao_operation_seconds{operation=\"fetchRecipe\",quantile=\"0.99\"} "
+				+ "2.000000000\n"));
+		assertTrue(text.contains("recipes_dao_operation_seconds_count{operation=\"fetchRecipe\"} 2\n"));
+		assertTrue(text.contains("recipes_dao_operation_seconds_sum{operation=\"fetchRecipe\"} 2.001572863\n"));
+	}
+
+	@Test
+	void daoCountersAreSplitByFamily() {
+		registry.increment("dao.fetchRecipes.rows", 42);
+		registry.increment("dao.fetchRecipes.errors", 1);
+		registry.increment("db.error.SQLTimeoutException", 3);
+		registry.increment("db.statement.slow", 7);
+
+		String text = render();
+
+		assertTrue(text.contains("recipes_dao_rows_total{operation=\"fetchRecipes\"} 42\n"));
+		assertTrue(text.contains("recipes_dao_errors_total{operation=\"fetchRecipes\"} 1\n"));
+		assertTrue(text.contains("recipes_db_errors_total{cause=\"SQLTimeoutException\"} 3\n"));
+		assertTrue(text.contains("recipes_db_slow_statements_total 7\n"));
+	}
+
+	@Test
+	void samplesOfAFamilyAreContiguous() {
+		registry.recordTime("dao.a", 1);
+		registry.increment("dao.a.rows", 1);
+		registry.recordTime("dao.b", 1);
+		registry.increment("dao.b.rows", 1);
+
+		List<String> lines = List.of(render().split("\n"));
+		int first = lines.indexOf("recipes_dao_rows_total{operation=\"a\"} 1");
+		int second = lines.indexOf("recipes_dao_rows_total{operation=\"b\"} 1");
+
+		assertTrue(first >= 0 && second >= 0);
+		assertEquals(1, Math.abs(first - second));
+	}
+
+	@Test
+	void labelValuesAreEscaped() {
+		registry.increment("db.error.a\"b\\c\nd", 1);
+
+		assertTrue(render().contains("recipes_db_errors_total{cause=\"a\\\"b\\\\c\\nd\"} 1\n"));
+	}
+
+	@Test
+	void bufferIsReusedAcrossRenders() {
+		int first = exporter.render();
+		byte[] buffer = exporter.getBuffer();
+		int second = exporter.render();
+
+		assertTrue(first > 0 && second > 0);
+		assertTrue(buffer == exporter.getBuffer());
+	}
+
+	private String render() {
+		int length = exporter.render();
+		return new String(exporter.getBuffer(), 0, length, StandardCharsets.US_ASCII);
+	}
+
+} // end CLASS
@@ -0,0 +1,87 @@
+package recipes.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class CategoryFacetsTest {
+	private static final int DESSERT = 10;
+	private static final int VEGAN = 20;
+	private static final int QUICK = 30;
+
+	private CategoryFacets facets;
+
+	@BeforeEach
+	void setUp() {
+		facets = new CategoryFacets();
+		facets.loaded();
+
+		facets.addCategory(1, DESSERT);
+		facets.addCategory(1, VEGAN);
+		facets.addCategory(2, DESSERT);
+		facets.addCategory(3, VEGAN);
+		facets.addCategory(3, QUICK);
+		facets.addRecipe(4);
+	}
+
+	@Test
+	void noCategoriesMatchesEveryRecipe() {
+		CategoryFacetResult result = facets.filter(List.of(), List.of(DESSERT, VEGAN, QUICK));
+
+		assertEquals(List.of(1, 2, 3, 4), result.getRecipeIds());
+		assertEquals(Map.of(DESSERT, 2, VEGAN, 2, QUICK, 1), result.getCategoryCounts());
+	}
+
+	@Test
+	void filterMatchesRecipesInEveryCategory() {
+		assertEquals(List.of(1, 2), facets.filter(List.of(DESSERT), List.of()).getRecipeIds());
+		assertEquals(List.of(1), facets.filter(List.of(DESSERT, VEGAN), List.of()).getRecipeIds());
+		assertEquals(List.of(), facets.filter(List.of(DESSERT, QUICK), List.of()).getRecipeIds());
+	}
+
+	@Test
+	void countsAreWithinTheMatchingRecipes() {
+		CategoryFacetResult result = facets.filter(List.of(VEGAN), List.of(DESSERT, VEGAN, QUICK));
+
+		assertEquals(List.of(1, 3), result.getRecipeIds());
+		assertEquals(1, result.getCount(DESSERT));
+		assertEquals(2, result.getCount(VEGAN));
+		assertEquals(1, result.getCount(QUICK));
+	}
+
+	@Test
+	void unknownCategoryMatchesNothingAndCountsZero() {
+		CategoryFacetResult result = facets.filter(List.of(99), List.of(DESSERT, 99));
+
+		assertEquals(List.of(), result.getRecipeIds());
+		assertEquals(Map.of(DESSERT, 0, 99, 0), result.getCategoryCounts());
+	}
+
+	@Test
+	void removedRecipeIsNoLongerMatchedOrCounted() {
+		facets.removeRecipe(1);
+
+		CategoryFacetResult result = facets.filter(List.of(), List.of(DESSERT, VEGAN));
+
+		assertEquals(List.of(2, 3, 4), result.getRecipeIds());
+		assertEquals(1, result.getCount(DESSERT));
+		assertEquals(1, result.getCount(VEGAN));
+	}
+
+	@Test
+	void recipeRemovedWhileLoadingIsDroppedWhenTheLoadFinishes() {
+		CategoryFacets loading = new CategoryFacets();
+
+		loading.addCategory(1, DESSERT);
+		loading.removeRecipe(2);
+		loading.addCategory(2, DESSERT);
+		loading.loaded();
+
+		assertEquals(List.of(1), loading.filter(List.of(DESSERT), List.of()).getRecipeIds());
+	}
+
+} // end CLASS
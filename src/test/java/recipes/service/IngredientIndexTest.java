@@ -0,0 +1,102 @@
+package recipes.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class IngredientIndexTest {
+	private IngredientIndex index;
+
+	@BeforeEach
+	void setUp() {
+		index = new IngredientIndex();
+		index.loaded();
+
+		add(1, "Flour", "Sugar", "Egg");
+		add(2, "flour", "Water");
+		add(3, "Egg", "Green  Onion");
+	}
+
+	@Test
+	void normalizeTrimsLowerCasesAndCollapsesWhitespace() {
+		assertEquals("green onion", IngredientIndex.normalize("  Green \t Onion\n"));
+		assertEquals("", IngredientIndex.normalize("   "));
+		assertEquals("", IngredientIndex.normalize(null));
+	}
+
+	@Test
+	void recipesUsingAllMatchesNormalizedNames() {
+		assertEquals(List.of(1, 2), index.recipesUsingAll(List.of("FLOUR")));
+		assertEquals(List.of(1), index.recipesUsingAll(List.of(" flour", "egg ")));
+		assertEquals(List.of(3), index.recipesUsingAll(List.of("green onion")));
+	}
+
+	@Test
+	void recipesUsingAllWithUnknownOrNoIngredientsIsEmpty() {
+		assertEquals(List.of(), index.recipesUsingAll(List.of("flour", "saffron")));
+		assertEquals(List.of(), index.recipesUsingAll(List.of()));
+		assertEquals(List.of(), index.recipesUsingAll(List.of(" ")));
+	}
+
+	@Test
+	void recipesMissingNoneNeedEveryIngredientOnHand() {
+		assertEquals(List.of(2), index.recipesMissingAtMost(List.of("flour", "water", "egg"), 0));
+		assertEquals(List.of(1, 2), index.recipesMissingAtMost(List.of("flour", "water", "sugar", "egg"), 0));
+	}
+
+	@Test
+	void recipesMissingAtMostCountsIngredientsNotOnHand() {
+		assertEquals(List.of(2, 3), index.recipesMissingAtMost(List.of("water", "egg"), 1));
+		assertEquals(List.of(1, 2, 3), index.recipesMissingAtMost(List.of("water", "egg"), 2));
+	}
+
+	@Test
+	void recipesMissingAtMostIgnoresRecipesWithNothingOnHand() {
+		assertEquals(List.of(2), index.recipesMissingAtMost(List.of("water"), 5));
+		assertEquals(List.of(), index.recipesMissingAtMost(List.of("saffron"), 5));
+	}
+
+	@Test
+	void duplicateIngredientsCountOnce() {
+		add(2, "Water");
+
+		assertEquals(List.of(2), index.recipesMissingAtMost(List.of("flour", "water", "Water"), 0));
+	}
+
+	@Test
+	void removedRecipeIsNoLongerFound() {
+		index.removeRecipe(1);
+
+		assertEquals(List.of(2), index.recipesUsingAll(List.of("flour")));
+		assertEquals(List.of(2), index.recipesMissingAtMost(List.of("flour", "sugar", "egg", "water"), 0));
+	}
+
+	@Test
+	void recipeRemovedWhileLoadingIsDroppedWhenTheLoadFinishes() {
+		IngredientIndex loading = new IngredientIndex();
+
+		loading.add(1, "flour");
+		loading.removeRecipe(5);
+		loading.add(5, "flour");
+		loading.loaded();
+
+		assertEquals(List.of(1), loading.recipesUsingAll(List.of("flour")));
+	}
+
+	@Test
+	void largeRecipeIdsGrowTheIndex() {
+		add(1000, "Flour", "Salt");
+
+		assertEquals(List.of(1, 2, 1000), index.recipesUsingAll(List.of("flour")));
+		assertEquals(List.of(2, 1000), index.recipesMissingAtMost(List.of("flour", "salt", "water"), 0));
+	}
+
+	private void add(int recipeId, String... ingredientNames) {
+		Arrays.stream(ingredientNames).forEach(name -> index.add(recipeId, name));
+	}
+
+} // end CLASS
@@ -0,0 +1,66 @@
+package recipes.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+class LazyIndexTest {
+
+	@Test
+	void loadsOnceOnFirstUse() {
+		AtomicInteger loads = new AtomicInteger();
+		LazyIndex<List<String>> lazy = new LazyIndex<>(ArrayList::new, list -> loads.incrementAndGet());
+
+		assertSame(lazy.get(), lazy.get());
+		assertEquals(1, loads.get());
+	}
+
+	@Test
+	void resetReloadsOnNextUse() {
+		AtomicInteger loads = new AtomicInteger();
+		LazyIndex<List<String>> lazy = new LazyIndex<>(ArrayList::new, list -> loads.incrementAndGet());
+
+		List<String> first = lazy.get();
+		lazy.reset();
+
+		assertNotSame(first, lazy.get());
+		assertEquals(2, loads.get());
+	}
+
+	@Test
+	void resetDuringLoadDiscardsThatLoad() {
+		AtomicInteger loads = new AtomicInteger();
+		List<LazyIndex<List<Integer>>> holder = new ArrayList<>();
+		LazyIndex<List<Integer>> lazy = new LazyIndex<>(ArrayList::new, list -> {
+			int load = loads.incrementAndGet();
+
+			list.add(load);
+			if (load == 1) {
+				holder.get(0).reset();
+			}
+		});
+		holder.add(lazy);
+
+		assertEquals(List.of(2), lazy.get());
+		assertEquals(2, loads.get());
+	}
+
+	@Test
+	void updateReachesTheIndexBeingLoaded() {
+		List<LazyIndex<List<String>>> holder = new ArrayList<>();
+		LazyIndex<List<String>> lazy = new LazyIndex<>(ArrayList::new, list -> {
+			list.add("loaded");
+			holder.get(0).update(index -> index.add("written"));
+		});
+		holder.add(lazy);
+
+		assertEquals(List.of("loaded", "written"), lazy.get());
+	}
+
+} // end CLASS
@@ -0,0 +1,94 @@
+package recipes.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class SqlScriptReaderTest {
+
+	@Test
+	void splitsOnSemicolonsAndCollapsesWhitespace() {
+		assertEquals(List.of("CREATE TABLE a ( x INT )", "INSERT INTO a VALUES (1)"),
+				statements("CREATE TABLE a (\n  x INT\n);\n\nINSERT INTO a   VALUES (1);\n"));
+	}
+
+	@Test
+	void lastStatementNeedsNoSemicolon() {
+		assertEquals(List.of("SELECT 1", "SELECT 2"), statements("SELECT 1;\nSELECT 2"));
+	}
+
+	@Test
+	void skipsEmptyStatements() {
+		assertEquals(List.of("SELECT 1"), statements(";;\n SELECT 1 ;; ;"));
+	}
+
+	@Test
+	void semicolonInsideQuotesDoesNotEndTheStatement() {
+		assertEquals(List.of("INSERT INTO a VALUES ('x;y', \"p;q\", `c;d`)", "SELECT 1"),
+				statements("INSERT INTO a VALUES ('x;y', \"p;q\", `c;d`);SELECT 1;"));
+	}
+
+	@Test
+	void doubledQuoteIsAnEscapeNotTheEndOfTheString() {
+		assertEquals(List.of("INSERT INTO a VALUES ('it''s; fine')", "SELECT 1"),
+				statements("INSERT INTO a VALUES ('it''s; fine');SELECT 1"));
+	}
+
+	@Test
+	void backslashEscapedQuoteDoesNotEndTheString() {
+		assertEquals(List.of("INSERT INTO a VALUES ('it\\'s; fine')", "SELECT 1"),
+				statements("INSERT INTO a VALUES ('it\\'s; fine');SELECT 1"));
+	}
+
+	@Test
+	void whitespaceInsideQuotesIsKept() {
+		assertEquals(List.of("SELECT 'a  b\n c'"), statements("SELECT   'a  b\n c';"));
+	}
+
+	@Test
+	void doubleDashFollowedByWhitespaceIsAComment() {
+		assertEquals(List.of("SELECT 1", "SELECT 2"), statements("SELECT 1; -- one; two\nSELECT 2;"));
+	}
+
+	@Test
+	void doubleDashWithoutWhitespaceIsNotAComment() {
+		assertEquals(List.of("SELECT 5--x", "SELECT 2"), statements("SELECT 5--x;\nSELECT 2;"));
+	}
+
+	@Test
+	void hashAndBlockCommentsAreRemoved() {
+		assertEquals(List.of("SELECT 1 FROM a", "SELECT 2"),
+				statements("# setup; really\nSELECT 1 /* the ; first */ FROM a;\n/* done */ SELECT 2;"));
+	}
+
+	@Test
+	void executableCommentIsKept() {
+		assertEquals(List.of("/*!40101 SET NAMES utf8 */", "SELECT 1"),
+				statements("/*!40101 SET NAMES utf8 */;\nSELECT 1;"));
+	}
+
+	@Test
+	void commentAtEndOfFileAddsNoStatement() {
+		assertEquals(List.of("SELECT 1"), statements("SELECT 1;\n-- the end"));
+		assertEquals(List.of("SELECT 1"), statements("SELECT 1;\n# the end"));
+		assertEquals(List.of("SELECT 1"), statements("SELECT 1;\n/* the end"));
+		assertEquals(List.of("SELECT 1"), statements("SELECT 1 --"));
+	}
+
+	@Test
+	void emptyScriptHasNoStatements() {
+		assertFalse(new SqlScriptReader(new StringReader(" \n-- nothing\n")).hasNext());
+	}
+
+	private static List<String> statements(String script) {
+		List<String> statements = new ArrayList<>();
+		new SqlScriptReader(new StringReader(script)).forEachRemaining(statements::add);
+		return statements;
+	}
+
+} // end CLASS